@@ -0,0 +1,228 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * Headless thumbnail pre-generation: walks folder trees and fills the thumbnail cache without opening
+ * the gallery window, e.g. to seed caches on shared workstations overnight
+ * Usage: BatchThumbnailer [--sizes=small,medium,large] folder...
+ * Resumable - files already in the cache (or backed off after a failure) are skipped, and the pack keeps
+ * everything written before an interruption, so a second run picks up where the first stopped
+ * Videos need the JavaFX toolkit; without a display they are skipped
+ */
+public class BatchThumbnailer {
+    // Outstanding requests per core - keeps every worker busy without queueing the whole tree
+    private static final int IN_FLIGHT_PER_CORE = 4;
+    private static final int PROGRESS_EVERY = 500;
+
+    private final List<ThumbnailSize> sizes; // Largest first
+    private final boolean videos;
+    private final Map<String, FormatStats> formats = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    private BatchThumbnailer(List<ThumbnailSize> sizes, boolean videos) {
+        this.sizes = sizes;
+        this.videos = videos;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        List<ThumbnailSize> sizes = new ArrayList<>();
+        List<Path> roots = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                for (String name : arg.substring("--sizes=".length()).split(",")) {
+                    sizes.add(ThumbnailSize.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                }
+            } else {
+                roots.add(Paths.get(arg));
+            }
+        }
+        if (roots.isEmpty()) {
+            System.out.println("Usage: BatchThumbnailer [--sizes=small,medium,large] folder...");
+            return;
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(ThumbnailSize.MEDIUM);
+        }
+        // Larger levels first - smaller ones can then be scaled down from the stored level
+        sizes.sort((a, b) -> Integer.compare(b.getPixels(), a.getPixels()));
+
+        BatchThumbnailer batch = new BatchThumbnailer(sizes, startToolkit());
+
+        // Ctrl+C still saves the link and failure tables (pack records are durable as written)
+        AtomicBoolean closed = new AtomicBoolean();
+        Runnable close = () -> {
+            if (closed.compareAndSet(false, true)) {
+                ThumbnailGenerator.shutdown();
+                ThumbnailCache.shutdown();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(new Thread(close, "batch-shutdown"));
+
+        long start = System.nanoTime();
+        List<MediaItem> items = new ArrayList<>();
+        for (Path root : roots) {
+            items.addAll(MediaScanner.scan(root.toFile()).getItems());
+        }
+        System.out.println("Batch: " + items.size() + " media files under " + roots + " (walked in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms)");
+
+        batch.run(items);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        batch.printSummary(seconds);
+        close.run();
+        if (batch.videos) {
+            Platform.exit();
+        }
+    }
+
+    /**
+     * The toolkit is only needed for video frames; false when it can't start (no display)
+     */
+    private static boolean startToolkit() {
+        try {
+            Platform.startup(() -> {
+            });
+            Platform.setImplicitExit(false);
+            return true;
+        } catch (IllegalStateException e) {
+            return true; // Already running
+        } catch (RuntimeException | UnsatisfiedLinkError e) {
+            System.out.println("JavaFX toolkit unavailable, videos will be skipped: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void run(List<MediaItem> items) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(Runtime.getRuntime().availableProcessors() * IN_FLIGHT_PER_CORE);
+        for (MediaItem item : items) {
+            File file = item.getFile();
+            boolean video = item.getType() == MediaItem.MediaType.VIDEO;
+            if ((video && !videos) || isDone(file)) {
+                skipped.increment();
+                continue;
+            }
+            inFlight.acquire();
+            long length = item.getSize();
+            long started = System.nanoTime();
+            generate(file, video, 0).whenComplete((thumbnail, throwable) -> {
+                boolean ok = thumbnail != null && !ThumbnailCache.isPlaceholderImage(thumbnail);
+                formatOf(file).record(length, System.nanoTime() - started, ok);
+                if (ok) {
+                    bytes.add(length);
+                } else {
+                    failed.increment();
+                }
+                completed.increment();
+                if (completed.sum() % PROGRESS_EVERY == 0) {
+                    System.out.println("Batch: " + completed.sum() + " generated, " + skipped.sum()
+                            + " skipped of " + items.size());
+                }
+                inFlight.release();
+            });
+        }
+        // Wait for the last requests
+        inFlight.acquire(Runtime.getRuntime().availableProcessors() * IN_FLIGHT_PER_CORE);
+    }
+
+    /**
+     * Every requested level already cached, or the file is still backed off after a failure
+     */
+    private boolean isDone(File file) {
+        if (ThumbnailCache.hasFailed(file)) {
+            return true;
+        }
+        for (ThumbnailSize size : sizes) {
+            if (!ThumbnailCache.hasCachedThumbnail(file, size)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Levels one after another, largest first; completes with the last level's thumbnail
+     */
+    private CompletableFuture<Image> generate(File file, boolean video, int level) {
+        ThumbnailSize size = sizes.get(level);
+        CompletableFuture<Image> thumbnail = video
+                ? ThumbnailGenerator.generateVideoThumbnail(file, size)
+                : ThumbnailGenerator.generateImageThumbnail(file, size);
+        if (level == sizes.size() - 1) {
+            return thumbnail;
+        }
+        return thumbnail.thenCompose(image -> image == null || ThumbnailCache.isPlaceholderImage(image)
+                ? CompletableFuture.completedFuture(image)
+                : generate(file, video, level + 1));
+    }
+
+    // By detected format, not extension (cached since the scan)
+    private FormatStats formatOf(File file) {
+        String format = MediaTypeClassifier.classify(file).name().toLowerCase(Locale.ROOT);
+        return formats.computeIfAbsent(format, key -> new FormatStats());
+    }
+
+    private void printSummary(double seconds) {
+        long done = completed.sum();
+        System.out.println(String.format(Locale.ROOT,
+                "Batch finished in %.1fs: %d generated (%d failed), %d skipped - %.1f files/s, %.1f MB/s",
+                seconds, done, failed.sum(), skipped.sum(), done / seconds, bytes.sum() / 1e6 / seconds));
+        for (Map.Entry<String, FormatStats> entry : new TreeMap<>(formats).entrySet()) {
+            System.out.println("  " + entry.getKey() + ": " + entry.getValue());
+        }
+        System.out.println("Thumbnail reads: " + ThumbnailGenerator.getReadStats());
+        System.out.println("Thumbnail concurrency: " + ThumbnailGenerator.getConcurrencyStats());
+        System.out.println("Thumbnail requests: " + ThumbnailGenerator.getCoalescingStats());
+        if (videos) {
+            System.out.println("Video thumbnails: " + ThumbnailGenerator.getVideoStats());
+        }
+    }
+
+    /**
+     * Per-format counters; latency is from request to the last level, so it includes queueing
+     */
+    private static final class FormatStats {
+        final LongAdder files = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+
+        void record(long length, long elapsedNanos, boolean ok) {
+            files.increment();
+            bytes.add(length);
+            nanos.add(elapsedNanos);
+            if (!ok) {
+                failures.increment();
+            }
+        }
+
+        @Override
+        public String toString() {
+            long count = files.sum();
+            return String.format(Locale.ROOT, "%d files (%d failed), %.1f MB, avg %.1f ms, avg %.0f KB",
+                    count, failures.sum(), bytes.sum() / 1e6, nanos.sum() / 1e6 / Math.max(1, count),
+                    bytes.sum() / 1024.0 / Math.max(1, count));
+        }
+    }
+}
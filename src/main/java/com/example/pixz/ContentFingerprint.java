@@ -0,0 +1,120 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content identity for media files, independent of path and modification time
+ * The cheap form hashes the size plus three sampled blocks (head, middle, tail); files small enough to be
+ * covered by the samples get a full hash straight away. computeFull() is the escalation used when two
+ * different live files share a sampled fingerprint
+ */
+public final class ContentFingerprint {
+    private static final int SAMPLE_BLOCK = 16 * 1024;
+    private static final int FULL_READ_BUFFER = 256 * 1024;
+
+    // Prefixes keep sampled and full keys from ever colliding with each other or with path keys
+    private static final String SAMPLED_PREFIX = "s";
+    private static final String FULL_PREFIX = "f";
+
+    private ContentFingerprint() {
+    }
+
+    /**
+     * Sampled fingerprint (or full hash for small files), null if the file can't be read
+     */
+    public static String compute(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= 3L * SAMPLE_BLOCK) {
+                return hashWhole(channel, size);
+            }
+
+            MessageDigest md = newDigest();
+            md.update(longBytes(size));
+            ByteBuffer block = ByteBuffer.allocate(SAMPLE_BLOCK);
+            long[] offsets = { 0, size / 2 - SAMPLE_BLOCK / 2, size - SAMPLE_BLOCK };
+            for (long offset : offsets) {
+                block.clear();
+                readFully(channel, block, offset);
+                block.flip();
+                md.update(block);
+            }
+            return SAMPLED_PREFIX + toHex(md.digest());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hash of the entire file - only used to settle a sampled-fingerprint collision
+     */
+    public static String computeFull(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return hashWhole(channel, channel.size());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether a fingerprint already covers every byte (no escalation possible or needed)
+     */
+    public static boolean isFull(String fingerprint) {
+        return fingerprint != null && fingerprint.startsWith(FULL_PREFIX);
+    }
+
+    private static String hashWhole(FileChannel channel, long size) throws IOException {
+        MessageDigest md = newDigest();
+        md.update(longBytes(size));
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(FULL_READ_BUFFER, Math.max(1, size)));
+        long position = 0;
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            buffer.flip();
+            md.update(buffer);
+            position += read;
+        }
+        return FULL_PREFIX + toHex(md.digest());
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("File shrank while fingerprinting");
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder hexString = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            String hex = Integer.toHexString(0xff & b);
+            if (hex.length() == 1)
+                hexString.append('0');
+            hexString.append(hex);
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.pixz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the preview images cameras embed in JPEG headers
+ * - EXIF thumbnail (IFD1 of the APP1 segment) - usually 160x120
+ * - MPF large thumbnails (APP2 segment) - VGA to full HD previews written by most recent cameras
+ * Only header bytes are parsed; the previews themselves are located by offset so a caller can read just
+ * those bytes instead of the whole file
+ */
+public class EmbeddedPreviews {
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_APP2 = 0xE2;
+
+    private static final int TAG_THUMBNAIL_OFFSET = 0x0201;
+    private static final int TAG_THUMBNAIL_LENGTH = 0x0202;
+    private static final int TAG_MP_ENTRY = 0xB002;
+    private static final int MP_ENTRY_SIZE = 16;
+
+    // MP entry image types that are reduced copies of the main image
+    private static final int MP_TYPE_LARGE_THUMBNAIL_VGA = 0x010001;
+    private static final int MP_TYPE_LARGE_THUMBNAIL_HD = 0x010002;
+
+    private EmbeddedPreviews() {
+    }
+
+    /**
+     * Location of one embedded preview (absolute file offset)
+     */
+    public static final class Preview {
+        final long offset;
+        final int length;
+
+        Preview(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Previews referenced from the header of a JPEG, smallest first
+     * The header is whatever prefix of the file the caller read; segments cut off by it are ignored
+     */
+    public static List<Preview> find(byte[] header) {
+        List<Preview> previews = new ArrayList<>();
+        if (!isJpeg(header)) {
+            return previews;
+        }
+        int pos = 2;
+        while (pos + 4 <= header.length && (header[pos] & 0xFF) == 0xFF) {
+            int marker = header[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++; // Fill byte
+                continue;
+            }
+            if (marker == MARKER_SOS || isStartOfFrame(marker)) {
+                break; // Metadata segments all come before the frame
+            }
+            int segmentLength = u16(header, pos + 2, false);
+            int data = pos + 4;
+            int end = Math.min(header.length, pos + 2 + segmentLength);
+            if (marker == MARKER_APP1 && startsWith(header, data, end, "Exif\0\0")) {
+                findExifThumbnail(header, data + 6, end, previews);
+            } else if (marker == MARKER_APP2 && startsWith(header, data, end, "MPF\0")) {
+                findMpfPreviews(header, data + 4, end, previews);
+            }
+            pos += 2 + segmentLength;
+        }
+        previews.sort((a, b) -> Integer.compare(a.length, b.length));
+        return previews;
+    }
+
+    /**
+     * Pixel size {width, height} from a JPEG's frame header, or null if the prefix doesn't reach it
+     */
+    public static int[] dimensions(byte[] jpeg) {
+        if (!isJpeg(jpeg)) {
+            return null;
+        }
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xFF;
+            if (marker == 0xFF) {
+                pos++;
+                continue;
+            }
+            if (marker == MARKER_SOS) {
+                return null;
+            }
+            if (isStartOfFrame(marker)) {
+                if (pos + 9 > jpeg.length) {
+                    return null;
+                }
+                return new int[] { u16(jpeg, pos + 7, false), u16(jpeg, pos + 5, false) };
+            }
+            pos += 2 + u16(jpeg, pos + 2, false);
+        }
+        return null;
+    }
+
+    public static boolean isJpeg(byte[] data) {
+        return data.length > 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == MARKER_SOI;
+    }
+
+    /**
+     * EXIF: IFD0 -> next IFD (IFD1) -> JPEGInterchangeFormat offset/length, relative to the TIFF header
+     */
+    private static void findExifThumbnail(byte[] b, int tiff, int end, List<Preview> previews) {
+        if (tiff + 8 > end) {
+            return;
+        }
+        boolean little = b[tiff] == 'I';
+        int ifd0 = tiff + u32(b, tiff + 4, little);
+        if (ifd0 + 2 > end || ifd0 < tiff) {
+            return;
+        }
+        int count = u16(b, ifd0, little);
+        int next = ifd0 + 2 + count * 12;
+        if (next + 4 > end) {
+            return;
+        }
+        int ifd1Offset = u32(b, next, little);
+        if (ifd1Offset == 0) {
+            return;
+        }
+        int ifd1 = tiff + ifd1Offset;
+        if (ifd1 + 2 > end || ifd1 < tiff) {
+            return;
+        }
+        int entries = u16(b, ifd1, little);
+        long offset = -1;
+        int length = -1;
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd1 + 2 + i * 12;
+            if (entry + 12 > end) {
+                return;
+            }
+            int tag = u16(b, entry, little);
+            if (tag == TAG_THUMBNAIL_OFFSET) {
+                offset = tiff + (u32(b, entry + 8, little) & 0xFFFFFFFFL);
+            } else if (tag == TAG_THUMBNAIL_LENGTH) {
+                length = u32(b, entry + 8, little);
+            }
+        }
+        if (offset > 0 && length > 0) {
+            previews.add(new Preview(offset, length));
+        }
+    }
+
+    /**
+     * MPF: MP Index IFD -> MP entries (type, size, offset relative to the MPF TIFF header)
+     */
+    private static void findMpfPreviews(byte[] b, int tiff, int end, List<Preview> previews) {
+        if (tiff + 8 > end) {
+            return;
+        }
+        boolean little = b[tiff] == 'I';
+        int ifd = tiff + u32(b, tiff + 4, little);
+        if (ifd + 2 > end || ifd < tiff) {
+            return;
+        }
+        int entries = u16(b, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return;
+            }
+            if (u16(b, entry, little) != TAG_MP_ENTRY) {
+                continue;
+            }
+            int bytes = u32(b, entry + 4, little);
+            int table = tiff + u32(b, entry + 8, little);
+            if (table < tiff) {
+                return;
+            }
+            for (int mp = table; mp + MP_ENTRY_SIZE <= Math.min(end, table + bytes); mp += MP_ENTRY_SIZE) {
+                int type = u32(b, mp, little) & 0xFFFFFF;
+                int size = u32(b, mp + 4, little);
+                long offset = u32(b, mp + 8, little) & 0xFFFFFFFFL;
+                // Offset 0 is the main image itself
+                if (offset != 0 && size > 0
+                        && (type == MP_TYPE_LARGE_THUMBNAIL_VGA || type == MP_TYPE_LARGE_THUMBNAIL_HD)) {
+                    previews.add(new Preview(tiff + offset, size));
+                }
+            }
+        }
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static boolean startsWith(byte[] b, int pos, int end, String prefix) {
+        if (pos + prefix.length() > end) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b[pos + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u16(byte[] b, int pos, boolean little) {
+        return little ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 : (b[pos] & 0xFF) << 8 | (b[pos + 1] & 0xFF);
+    }
+
+    private static int u32(byte[] b, int pos, boolean little) {
+        return little
+                ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16 | (b[pos + 3] & 0xFF) << 24
+                : (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+}
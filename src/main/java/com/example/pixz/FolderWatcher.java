@@ -0,0 +1,429 @@
+package com.example.pixz;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches library folders (recursively) and reports what changed in them, so the gallery can update
+ * itself instead of rescanning everything
+ * Local folders use a WatchService with one key per directory; network mounts (where change
+ * notifications are unreliable or missing) and folders that can't be registered are polled instead, by
+ * comparing scanner snapshots of the media files
+ * Events are debounced per root: changes are held until the folder has been quiet for QUIET_MS (a bulk
+ * copy becomes one delivery instead of thousands), but never longer than MAX_DELAY_MS, so a long copy
+ * still shows up as it goes. Only the last event per path is kept
+ */
+public class FolderWatcher {
+    private static final long QUIET_MS = 500;
+    private static final long MAX_DELAY_MS = 3000;
+    private static final long POLL_INTERVAL_MS = 15_000;
+
+    // FileStore types of network filesystems - polled rather than trusted to send notifications
+    private static final Set<String> NETWORK_STORE_TYPES = Set.of(
+            "nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "smb3", "afpfs", "webdav", "davfs", "fuse.sshfs",
+            "sshfs", "9p", "ncpfs", "fuse.rclone");
+
+    public enum ChangeKind {
+        CREATED, MODIFIED, DELETED
+    }
+
+    /**
+     * One changed path. For a directory, CREATED or MODIFIED means its whole subtree should be listed
+     * again (a new folder, or events were lost); DELETED may name a file or a whole directory
+     */
+    public static final class Change {
+        final Path path;
+        final ChangeKind kind;
+
+        Change(Path path, ChangeKind kind) {
+            this.path = path;
+            this.kind = kind;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public ChangeKind getKind() {
+            return kind;
+        }
+    }
+
+    /**
+     * Receives debounced changes, one root at a time on the watcher's thread (may do I/O)
+     */
+    public interface Listener {
+        void onChanges(Path root, List<Change> changes);
+    }
+
+    private final Listener listener;
+    private final WatchService watchService;
+    private final Thread eventThread;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "folder-watcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Guarded by this
+    private final Map<Path, Root> roots = new HashMap<>();
+    private final Map<WatchKey, Registration> registrations = new HashMap<>();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder deliveries = new LongAdder();
+    private final LongAdder polls = new LongAdder();
+
+    public FolderWatcher(Listener listener) {
+        this.listener = listener;
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            System.out.println("File change notifications unavailable, folders will be polled: " + e.getMessage());
+        }
+        this.watchService = service;
+        this.eventThread = new Thread(this::processEvents, "folder-watcher-events");
+        this.eventThread.setDaemon(true);
+        if (watchService != null) {
+            this.eventThread.start();
+        }
+    }
+
+    /**
+     * Start watching a folder tree; ignored if it is already covered by a watched folder, and replaces
+     * watched folders inside it. Registration runs in the background
+     */
+    public synchronized void watch(Path folder) {
+        Path path = folder.toAbsolutePath().normalize();
+        for (Path watched : roots.keySet()) {
+            if (path.startsWith(watched)) {
+                return;
+            }
+        }
+        for (Path watched : new ArrayList<>(roots.keySet())) {
+            if (watched.startsWith(path)) {
+                unwatch(watched);
+            }
+        }
+        Root root = new Root(path);
+        roots.put(path, root);
+        executor.execute(() -> start(root));
+    }
+
+    /**
+     * Stop watching a folder added with watch (folders inside a watched one can't be excluded)
+     */
+    public synchronized void unwatch(Path folder) {
+        Root root = roots.remove(folder.toAbsolutePath().normalize());
+        if (root == null) {
+            return;
+        }
+        root.closed = true;
+        cancelRegistrations(root);
+        if (root.poll != null) {
+            root.poll.cancel(false);
+        }
+        if (root.flush != null) {
+            root.flush.cancel(false);
+        }
+    }
+
+    private synchronized void cancelRegistrations(Root root) {
+        Iterator<Map.Entry<WatchKey, Registration>> it = registrations.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<WatchKey, Registration> entry = it.next();
+            if (entry.getValue().root == root) {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    public String getStats() {
+        int polled = 0;
+        int watched;
+        int directories;
+        synchronized (this) {
+            watched = roots.size();
+            for (Root root : roots.values()) {
+                if (root.polling) {
+                    polled++;
+                }
+            }
+            directories = registrations.size();
+        }
+        return "roots=" + watched + " (" + polled + " polled), directories=" + directories + ", events="
+                + events.sum() + ", deliveries=" + deliveries.sum() + ", polls=" + polls.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close(); // Ends the event thread
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Register every directory of a new root, or fall back to polling it
+     */
+    private void start(Root root) {
+        if (root.closed) {
+            return;
+        }
+        if (watchService == null || isNetworkStore(root.path)) {
+            startPolling(root);
+            return;
+        }
+        try {
+            registerTree(root, root.path);
+        } catch (IOException e) {
+            // E.g. the per-user limit of watched directories is reached
+            System.out.println("Can't watch " + root.path + ", polling instead: " + e.getMessage());
+            cancelRegistrations(root);
+            startPolling(root);
+        }
+    }
+
+    private static boolean isNetworkStore(Path path) {
+        if (path.toString().startsWith("\\\\")) {
+            return true; // UNC path
+        }
+        try {
+            return NETWORK_STORE_TYPES.contains(Files.getFileStore(path).type().toLowerCase(Locale.ROOT));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void registerTree(Root root, Path directory) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                synchronized (FolderWatcher.this) {
+                    if (root.closed) {
+                        key.cancel();
+                        return FileVisitResult.TERMINATE;
+                    }
+                    registrations.put(key, new Registration(root, dir));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // Unreadable subfolder - skip it, keep the rest watched
+            }
+        });
+    }
+
+    private void startPolling(Root root) {
+        root.snapshot = snapshot(root.path);
+        synchronized (this) {
+            if (root.closed) {
+                return;
+            }
+            root.polling = true;
+            root.poll = executor.scheduleWithFixedDelay(() -> poll(root), POLL_INTERVAL_MS, POLL_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Size and mtime of every media file under the root
+     */
+    private static Map<Path, long[]> snapshot(Path root) {
+        Map<Path, long[]> files = new HashMap<>();
+        for (MediaItem item : MediaScanner.scan(root.toFile()).getItems()) {
+            files.put(item.getFile().toPath(), new long[] { item.getSize(), item.getLastModified() });
+        }
+        return files;
+    }
+
+    private void poll(Root root) {
+        if (root.closed) {
+            return;
+        }
+        polls.increment();
+        Map<Path, long[]> current = snapshot(root.path);
+        Map<Path, long[]> previous = root.snapshot;
+        for (Map.Entry<Path, long[]> entry : current.entrySet()) {
+            long[] before = previous.remove(entry.getKey());
+            if (before == null) {
+                record(root, entry.getKey(), ChangeKind.CREATED);
+            } else if (before[0] != entry.getValue()[0] || before[1] != entry.getValue()[1]) {
+                record(root, entry.getKey(), ChangeKind.MODIFIED);
+            }
+        }
+        for (Path gone : previous.keySet()) {
+            record(root, gone, ChangeKind.DELETED);
+        }
+        root.snapshot = current;
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Registration registration;
+            synchronized (this) {
+                registration = registrations.get(key);
+            }
+            if (registration == null) {
+                key.cancel();
+                continue;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                events.increment();
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Events were lost - list this directory again
+                    record(registration.root, registration.directory, ChangeKind.MODIFIED);
+                    continue;
+                }
+                Path path = registration.directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    record(registration.root, path, ChangeKind.DELETED);
+                } else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        // New folder (or one moved in) - watch it; its files are found by listing it
+                        executor.execute(() -> registerNewDirectory(registration.root, path));
+                    }
+                    record(registration.root, path, ChangeKind.CREATED);
+                } else if (!Files.isDirectory(path)) {
+                    // Directory modify events only mean an entry changed, which has its own event
+                    record(registration.root, path, ChangeKind.MODIFIED);
+                }
+            }
+            if (!key.reset()) {
+                // Directory deleted or moved away
+                synchronized (this) {
+                    registrations.remove(key);
+                }
+                if (registration.directory.equals(registration.root.path)) {
+                    record(registration.root, registration.directory, ChangeKind.DELETED);
+                }
+            }
+        }
+    }
+
+    private void registerNewDirectory(Root root, Path directory) {
+        if (root.closed) {
+            return;
+        }
+        try {
+            registerTree(root, directory);
+        } catch (IOException e) {
+            System.out.println("Can't watch new folder " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hold a change for the root's next delivery, and push the delivery back until things are quiet
+     */
+    private void record(Root root, Path path, ChangeKind kind) {
+        synchronized (this) {
+            if (root.closed) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (root.pending.isEmpty()) {
+                root.firstPendingNanos = now;
+            }
+            root.pending.remove(path); // Re-inserted last, so deliveries keep event order
+            root.pending.put(path, kind);
+
+            if (root.flush != null) {
+                root.flush.cancel(false);
+            }
+            long waitedMs = TimeUnit.NANOSECONDS.toMillis(now - root.firstPendingNanos);
+            long delayMs = Math.max(0, Math.min(QUIET_MS, MAX_DELAY_MS - waitedMs));
+            try {
+                root.flush = executor.schedule(() -> deliver(root), delayMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Shut down
+            }
+        }
+    }
+
+    private void deliver(Root root) {
+        List<Change> changes = new ArrayList<>();
+        synchronized (this) {
+            if (root.closed || root.pending.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<Path, ChangeKind> entry : root.pending.entrySet()) {
+                changes.add(new Change(entry.getKey(), entry.getValue()));
+            }
+            root.pending.clear();
+            root.flush = null;
+        }
+        deliveries.increment();
+        try {
+            listener.onChanges(root.path, changes);
+        } catch (RuntimeException e) {
+            System.out.println("Folder change handler failed: " + e.getMessage());
+        }
+    }
+
+    private static final class Root {
+        final Path path;
+
+        // Guarded by the watcher
+        final LinkedHashMap<Path, ChangeKind> pending = new LinkedHashMap<>();
+        long firstPendingNanos;
+        ScheduledFuture<?> flush;
+        ScheduledFuture<?> poll;
+        boolean polling;
+        volatile boolean closed;
+
+        // Watcher thread only
+        Map<Path, long[]> snapshot;
+
+        Root(Path path) {
+            this.path = path;
+        }
+    }
+
+    private static final class Registration {
+        final Root root;
+        final Path directory;
+
+        Registration(Root root, Path directory) {
+            this.root = root;
+            this.directory = directory;
+        }
+    }
+}
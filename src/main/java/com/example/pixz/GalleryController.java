@@ -1,10 +1,16 @@
 package com.example.pixz;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -85,10 +91,32 @@ public class GalleryController {
     private Button refreshButton;
 
     private final Set<String> selectedFolders = new HashSet<>();
-    private final List<MediaItem> mediaItems = new ArrayList<>();
+    private final MediaLibrary library = new MediaLibrary();
     private final Map<String, HBox> folderCards = new HashMap<>();
     private final Map<String, Button> folderFilterButtonsMap = new HashMap<>();
 
+    // Pyramid level cards currently need (cell size x screen output scale) and level loads in flight
+    private ThumbnailSize thumbnailLevel = ThumbnailSize.MEDIUM;
+    private final Map<String, PendingLoad> pendingLevelLoads = new HashMap<>();
+
+    // Generation queue follows the viewport: screens above and below it that count as the prefetch band
+    private static final double PREFETCH_SCREENS = 1.0;
+    private boolean viewportUpdateQueued = false;
+
+    // Rebuilds cards once Ctrl+scroll zooming pauses
+    private final javafx.animation.PauseTransition zoomRefresh = new javafx.animation.PauseTransition(
+            javafx.util.Duration.millis(150));
+
+    // Folder scans still running (FX thread only) - cache maintenance waits until the library is complete
+    private int pendingScans = 0;
+
+    // The library as last scanned - shown at startup, then revalidated in the background
+    private final MediaCatalog catalog = new MediaCatalog(
+            Paths.get(System.getProperty("user.home"), ".wingallery", "catalog.idx"));
+
+    // Applies file changes in scanned folders to the library as they happen (created in initialize)
+    private FolderWatcher folderWatcher;
+
     // Filter and sort state
     private enum MediaFilter {
         ALL, PHOTOS, VIDEOS
@@ -101,7 +129,7 @@ public class GalleryController {
     // Fullscreen viewer components
     private StackPane fullscreenViewer;
     private MediaPlayer currentMediaPlayer;
-    private int currentMediaIndex = -1;
+    private MediaItem currentMediaItem;
     private javafx.scene.Node headerNode; // Store header to restore later
 
     private javafx.scene.layout.HBox customTitleBar; // Custom title bar reference
@@ -136,9 +164,16 @@ public class GalleryController {
         // Setup sidebar auto-hide
         setupSidebar();
 
+        // Ctrl+scroll zoom and HiDPI-aware thumbnail level
+        setupThumbnailZoom();
+        setupViewportPriority();
+
         // Store header reference
         headerNode = rootPane.getTop();
 
+        // Watch scanned folders - before the session's folders are scanned
+        folderWatcher = new FolderWatcher(this::onFolderChanges);
+
         // Load previous session
         loadPreviousSession();
 
@@ -166,6 +201,194 @@ public class GalleryController {
         });
     }
 
+    /**
+     * Ctrl+scroll changes the cell size; the thumbnail level follows cell size and the window's output scale
+     */
+    private void setupThumbnailZoom() {
+        zoomRefresh.setOnFinished(e -> refreshGallery());
+
+        galleryScrollPane.addEventFilter(javafx.scene.input.ScrollEvent.SCROLL, event -> {
+            if (!event.isControlDown() || event.getDeltaY() == 0) {
+                return;
+            }
+            double factor = event.getDeltaY() > 0 ? 1.1 : 1 / 1.1;
+            galleryPane.setCellSize(galleryPane.getCellSize() * factor);
+            updateThumbnailLevel();
+            zoomRefresh.playFromStart();
+            event.consume();
+        });
+
+        // Output scale changes when the window moves to a screen with different scaling
+        galleryPane.sceneProperty().addListener((obs, oldScene, scene) -> {
+            if (scene != null) {
+                scene.windowProperty().addListener((wObs, oldWindow, window) -> watchOutputScale(window));
+                watchOutputScale(scene.getWindow());
+            }
+        });
+    }
+
+    private void watchOutputScale(javafx.stage.Window window) {
+        if (window != null) {
+            window.outputScaleXProperty().addListener((obs, oldScale, newScale) -> {
+                if (updateThumbnailLevel()) {
+                    refreshGallery();
+                }
+            });
+            updateThumbnailLevel();
+        }
+    }
+
+    /**
+     * Keep the thumbnail queue ordered by what is on screen - recomputed (at most once per pulse) whenever
+     * the gallery scrolls, resizes or its cards change
+     */
+    private void setupViewportPriority() {
+        javafx.beans.InvalidationListener listener = obs -> queueViewportUpdate();
+        galleryScrollPane.vvalueProperty().addListener(listener);
+        galleryScrollPane.viewportBoundsProperty().addListener(listener);
+        galleryPane.heightProperty().addListener(listener);
+        galleryPane.getChildren().addListener(listener);
+    }
+
+    private void queueViewportUpdate() {
+        if (!viewportUpdateQueued) {
+            viewportUpdateQueued = true;
+            Platform.runLater(this::updateViewportPriority);
+        }
+    }
+
+    /**
+     * Visible cards go first in the generation queue, then the prefetch band; anything else is demoted
+     * On-demand level loads for cards that left the band are cancelled, and band cards still below the
+     * needed level request it again
+     */
+    private void updateViewportPriority() {
+        viewportUpdateQueued = false;
+        double viewportHeight = galleryScrollPane.getViewportBounds().getHeight();
+        double scrollRange = Math.max(0, galleryPane.getHeight() - viewportHeight);
+        double top = galleryScrollPane.getVvalue() * scrollRange;
+        double prefetch = viewportHeight * PREFETCH_SCREENS;
+
+        int[] visible = galleryPane.getIndexRange(top, top + viewportHeight);
+        int[] band = galleryPane.getIndexRange(top - prefetch, top + viewportHeight + prefetch);
+
+        List<javafx.scene.Node> cards = galleryPane.getChildren();
+        List<String> visiblePaths = new ArrayList<>();
+        List<String> prefetchPaths = new ArrayList<>();
+        Set<String> bandPaths = new HashSet<>();
+        for (int i = band[0]; i < band[1]; i++) {
+            javafx.scene.Node node = cards.get(i);
+            if (!(node instanceof StackPane) || !(node.getUserData() instanceof MediaItem)) {
+                continue;
+            }
+            StackPane card = (StackPane) node;
+            MediaItem item = (MediaItem) card.getUserData();
+            bandPaths.add(item.getPath());
+            if (i >= visible[0] && i < visible[1]) {
+                visiblePaths.add(item.getPath());
+            } else {
+                prefetchPaths.add(item.getPath());
+            }
+
+            // Upgrade cancelled while off screen (or never requested) - ask again now it is close
+            ThumbnailSize held = item.getThumbnailSize();
+            if ((held == null || held.getPixels() < thumbnailLevel.getPixels())
+                    && !pendingLevelLoads.containsKey(thumbnailLevel.keyFor(item.getPath()))) {
+                Image previous = item.getThumbnail();
+                Image current = thumbnailForCard(item);
+                if (current != null && current != previous) {
+                    updateCardWithThumbnail(card, item, current);
+                }
+            }
+        }
+        ThumbnailGenerator.updateViewport(visiblePaths, prefetchPaths);
+
+        // Level loads are only worth finishing for cards the user can reach soon
+        for (PendingLoad pending : new ArrayList<>(pendingLevelLoads.values())) {
+            if (!bandPaths.contains(pending.path)) {
+                pending.future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Recompute the level cards need; returns true if it changed
+     */
+    private boolean updateThumbnailLevel() {
+        double outputScale = 1.0;
+        if (galleryPane.getScene() != null && galleryPane.getScene().getWindow() != null) {
+            outputScale = galleryPane.getScene().getWindow().getOutputScaleX();
+        }
+        ThumbnailSize level = ThumbnailSize.forDisplaySize(galleryPane.getCellSize() * outputScale);
+        if (level == thumbnailLevel) {
+            return false;
+        }
+        thumbnailLevel = level;
+        return true;
+    }
+
+    /**
+     * Thumbnail to show in a card right now
+     * If the held one is below the needed level, the needed level is loaded from memory or disk, or
+     * generated lazily (derived from a larger stored level when possible); the card updates when it arrives
+     */
+    private Image thumbnailForCard(MediaItem item) {
+        ThumbnailSize level = thumbnailLevel;
+        ThumbnailSize held = item.getThumbnailSize();
+        Image thumbnail = item.getThumbnail();
+        if (thumbnail != null && held != null && held.getPixels() >= level.getPixels()) {
+            return thumbnail;
+        }
+
+        Image atLevel = ThumbnailCache.getMemoryCachedThumbnail(item.getFile(), level);
+        if (atLevel != null) {
+            item.setThumbnail(atLevel, level);
+            return atLevel;
+        }
+
+        // Show any level already in memory while the right one loads
+        if (thumbnail == null) {
+            for (ThumbnailSize other : ThumbnailSize.values()) {
+                Image inMemory = ThumbnailCache.getMemoryCachedThumbnail(item.getFile(), other);
+                if (inMemory != null) {
+                    item.setThumbnail(inMemory, other);
+                    thumbnail = inMemory;
+                    break;
+                }
+            }
+        }
+
+        if (ThumbnailCache.hasCachedThumbnail(item.getFile(), level)) {
+            loadThumbnailLevel(item, level, () -> ThumbnailCache.loadCachedThumbnailAsync(item.getFile(), level));
+        } else if (thumbnail != null || ThumbnailCache.hasCachedThumbnailAtAnyLevel(item.getFile())) {
+            // Items with nothing at all are covered by the scan's progressive generation
+            loadThumbnailLevel(item, level, () -> item.getType() == MediaItem.MediaType.VIDEO
+                    ? ThumbnailGenerator.generateVideoThumbnail(item.getFile(), level)
+                    : ThumbnailGenerator.generateImageThumbnail(item.getFile(), level));
+        }
+        return thumbnail;
+    }
+
+    private void loadThumbnailLevel(MediaItem item, ThumbnailSize level,
+            java.util.function.Supplier<CompletableFuture<Image>> loader) {
+        String requestKey = level.keyFor(item.getPath());
+        if (pendingLevelLoads.containsKey(requestKey)) {
+            return;
+        }
+        CompletableFuture<Image> future = loader.get();
+        PendingLoad pending = new PendingLoad(item.getPath(), future);
+        pendingLevelLoads.put(requestKey, pending);
+        future.whenComplete((loaded, throwable) -> Platform.runLater(() -> {
+            pendingLevelLoads.remove(requestKey, pending);
+            // A failed upgrade must not replace a real lower-level thumbnail with a placeholder
+            boolean keepCurrent = item.getThumbnail() != null && ThumbnailCache.isPlaceholderImage(loaded);
+            if (loaded != null && !keepCurrent) {
+                item.setThumbnail(loaded, level);
+                updateGalleryItem(item);
+            }
+        }));
+    }
+
     /**
      * Load folders from previous session
      */
@@ -173,14 +396,53 @@ public class GalleryController {
         Set<String> savedFolders = SessionManager.loadSession();
 
         if (!savedFolders.isEmpty()) {
-            // Load each folder
-            for (String folderPath : savedFolders) {
+            // Saved folders inside another saved folder are covered by its walk
+            List<String> roots = new ArrayList<>(savedFolders);
+            roots.sort(Comparator.comparingInt(String::length)); // Parents before their subfolders
+            List<String> topLevel = new ArrayList<>();
+            for (String folderPath : roots) {
+                if (!startsWithAny(folderPath, topLevel.stream().map(root -> root + File.separator).toList())) {
+                    topLevel.add(folderPath);
+                }
+            }
+
+            // Show the cataloged library at once, without touching the folders
+            List<MediaItem> restored = new ArrayList<>();
+            List<File> folders = new ArrayList<>();
+            for (String folderPath : topLevel) {
                 File folder = new File(folderPath);
                 if (folder.exists() && folder.isDirectory()) {
-                    scanFolder(folder);
+                    folders.add(folder);
+                    List<MediaItem> items = catalog.itemsUnder(folder.getAbsolutePath());
+                    if (items != null) {
+                        restored.addAll(items);
+                    }
                 }
             }
+            if (!restored.isEmpty()) {
+                restoreFromCatalog(restored);
+            }
+
+            // Then revalidate each folder in the background - only changed directories are listed
+            for (File folder : folders) {
+                scanFolder(folder, true);
+            }
+        }
+    }
+
+    private void restoreFromCatalog(List<MediaItem> restored) {
+        Map<String, Integer> folderMediaCount = new java.util.TreeMap<>();
+        for (MediaItem item : restored) {
+            folderMediaCount.merge(item.getFile().getParentFile().getAbsolutePath(), 1, Integer::sum);
+        }
+        for (String folderPath : folderMediaCount.keySet()) {
+            if (selectedFolders.add(folderPath)) {
+                addFolderToSidebar(new File(folderPath));
+            }
         }
+        addScanBatch(restored);
+        System.out.println("Restored " + restored.size() + " items in " + folderMediaCount.size()
+                + " folders from the media catalog");
     }
 
     /**
@@ -190,12 +452,22 @@ public class GalleryController {
         if (!selectedFolders.isEmpty()) {
             SessionManager.saveSession(selectedFolders);
         }
+        System.out.println("Thumbnail memory cache: " + ThumbnailCache.getMemoryCacheStats());
+        System.out.println("Thumbnail requests: " + ThumbnailGenerator.getCoalescingStats());
+        System.out.println("Thumbnail concurrency: " + ThumbnailGenerator.getConcurrencyStats());
+        System.out.println("Thumbnail reads: " + ThumbnailGenerator.getReadStats());
+        System.out.println("Video thumbnails: " + ThumbnailGenerator.getVideoStats());
+        System.out.println("Folder watcher: " + folderWatcher.getStats());
+        folderWatcher.shutdown();
+        catalog.retainUnder(selectedFolders);
+        catalog.save();
         // Shutdown thumbnail generator thread pool
         ThumbnailGenerator.shutdown();
+        ThumbnailCache.shutdown();
     }
 
     private void showEmptyStateIfNeeded() {
-        if (mediaItems.isEmpty()) {
+        if (library.isEmpty()) {
             // Create empty state UI centered in viewport
             StackPane emptyStateContainer = new StackPane();
             emptyStateContainer.setStyle("-fx-background-color: #000000;");
@@ -280,7 +552,7 @@ public class GalleryController {
     }
 
     private void updateHeaderInfo() {
-        itemCountLabel.setText(mediaItems.size() + " items");
+        itemCountLabel.setText(library.size() + " items");
 
         // Update header based on folder filter
         if (currentFolderFilter != null) {
@@ -342,21 +614,34 @@ public class GalleryController {
     protected void onRefreshClick() {
         // Collect file paths with placeholders
         Set<String> filesToClearCache = new HashSet<>();
+        int skippedFailures = 0;
+        int dueRetries = 0;
         
-        // Scan current items for grey placeholders and clear their cache
-        for (MediaItem item : mediaItems) {
+        // Scan current items for placeholders and clear their cache
+        // Provenance is recorded at generation, so this is a field read per item - no pixel sampling
+        for (MediaItem item : library.items()) {
             Image thumbnail = item.getThumbnail();
 
             // Only check items that have thumbnails loaded
             if (thumbnail != null) {
-                // Check if it's a placeholder (grey or black)
-                boolean isPlaceholder = ThumbnailCache.isPlaceholderImage(thumbnail);
-                if (isPlaceholder) {
-                    System.out.println("Refreshing placeholder for: " + item.getName());
+                ThumbnailProvenance provenance = ThumbnailProvenance.of(thumbnail);
+                boolean isPlaceholder = provenance.isPlaceholder();
+                if (isPlaceholder && ThumbnailCache.hasFailed(item.getFile())) {
+                    // Failed recently - the rescan skips it until its retry is due
+                    skippedFailures++;
+                } else if (isPlaceholder) {
+                    if (ThumbnailCache.isRetryDue(item.getFile())) {
+                        dueRetries++; // Failed before, backoff expired
+                    }
+                    System.out.println("Refreshing placeholder (" + provenance + ") for: " + item.getName());
                     filesToClearCache.add(item.getFile().getAbsolutePath());
                 }
             }
         }
+        if (skippedFailures > 0 || dueRetries > 0) {
+            System.out.println("Retrying " + dueRetries + " failed thumbnails that are due, skipping "
+                    + skippedFailures + " until their retry is due");
+        }
         
         // Clear cache for all placeholder files
         for (String filePath : filesToClearCache) {
@@ -368,16 +653,7 @@ public class GalleryController {
             File folderToRefresh = new File(currentFolderFilter);
 
             // Keep items from other folders, only remove items from the filtered folder
-            List<MediaItem> itemsToKeep = new ArrayList<>();
-            for (MediaItem item : mediaItems) {
-                if (!item.getPath().startsWith(currentFolderFilter)) {
-                    itemsToKeep.add(item);
-                }
-            }
-
-            // Clear and restore items from other folders
-            mediaItems.clear();
-            mediaItems.addAll(itemsToKeep);
+            library.removeUnder(folderToRefresh.getAbsolutePath());
 
             // Rescan only the filtered folder (will add new items and call refreshGallery)
             if (folderToRefresh.exists()) {
@@ -394,7 +670,7 @@ public class GalleryController {
             }
 
             // Clear current media items
-            mediaItems.clear();
+            library.clear();
 
             // Rescan each folder (each will call refreshGallery when done)
             for (File folder : foldersToRescan) {
@@ -439,9 +715,71 @@ public class GalleryController {
         return parent != null && parent.getAbsolutePath().equals(folder.getAbsolutePath());
     }
 
+    /**
+     * Whether an item passes the type, search and folder filters
+     */
+    private boolean matchesFilters(MediaItem item) {
+        String searchText = searchField.getText();
+        String lowerSearch = searchText != null ? searchText.toLowerCase() : "";
+
+        // Apply media type filter
+        boolean matchesFilter = false;
+        switch (currentFilter) {
+            case ALL:
+                matchesFilter = true;
+                break;
+            case PHOTOS:
+                matchesFilter = item.getType() == MediaItem.MediaType.IMAGE;
+                break;
+            case VIDEOS:
+                matchesFilter = item.getType() == MediaItem.MediaType.VIDEO;
+                break;
+        }
+
+        // Apply search filter
+        boolean matchesSearch = searchText == null || searchText.trim().isEmpty() ||
+                item.getName().toLowerCase().contains(lowerSearch);
+
+        // Apply folder filter - only show direct children of the selected folder
+        boolean matchesFolderFilter = currentFolderFilter == null ||
+                isDirectChildOf(item.getFile(), new File(currentFolderFilter));
+
+        return matchesFilter && matchesSearch && matchesFolderFilter;
+    }
+
+    /**
+     * Order of the selected sort option, or null to keep the order items were found in
+     */
+    private Comparator<MediaItem> currentSortOrder() {
+        if ("Name".equals(currentSortBy)) {
+            return Comparator.comparing(MediaItem::getName, String.CASE_INSENSITIVE_ORDER);
+        } else if ("Date Modified".equals(currentSortBy)) {
+            // Scanned mtime - a stat per comparison would be a syscall per step of every sort and insert
+            return (a, b) -> Long.compare(b.getLastModified(), a.getLastModified());
+        }
+        return null;
+    }
+
+    /**
+     * Items that can pass the folder and type filters, from the library's indexes
+     */
+    private List<MediaItem> filterCandidates() {
+        if (currentFolderFilter != null) {
+            return library.itemsIn(new File(currentFolderFilter).getAbsolutePath());
+        }
+        switch (currentFilter) {
+            case PHOTOS:
+                return library.items(MediaItem.MediaType.IMAGE);
+            case VIDEOS:
+                return library.items(MediaItem.MediaType.VIDEO);
+            default:
+                return library.items();
+        }
+    }
+
     private void applyFiltersAndSort() {
         // Show empty state if no media items
-        if (mediaItems.isEmpty()) {
+        if (library.isEmpty()) {
             showEmptyStateIfNeeded();
             return;
         }
@@ -456,43 +794,19 @@ public class GalleryController {
         galleryPane.getChildren().clear();
 
         String searchText = searchField.getText();
-        String lowerSearch = searchText != null ? searchText.toLowerCase() : "";
 
-        // Filter items
+        // Filter items - the folder or type index narrows the candidates, the rest is checked per item
         List<MediaItem> filteredItems = new ArrayList<>();
-        for (MediaItem item : mediaItems) {
-            // Apply media type filter
-            boolean matchesFilter = false;
-            switch (currentFilter) {
-                case ALL:
-                    matchesFilter = true;
-                    break;
-                case PHOTOS:
-                    matchesFilter = item.getType() == MediaItem.MediaType.IMAGE;
-                    break;
-                case VIDEOS:
-                    matchesFilter = item.getType() == MediaItem.MediaType.VIDEO;
-                    break;
-            }
-
-            // Apply search filter
-            boolean matchesSearch = searchText == null || searchText.trim().isEmpty() ||
-                    item.getName().toLowerCase().contains(lowerSearch);
-
-            // Apply folder filter - only show direct children of the selected folder
-            boolean matchesFolderFilter = currentFolderFilter == null ||
-                    isDirectChildOf(item.getFile(), new File(currentFolderFilter));
-
-            if (matchesFilter && matchesSearch && matchesFolderFilter) {
+        for (MediaItem item : filterCandidates()) {
+            if (matchesFilters(item)) {
                 filteredItems.add(item);
             }
         }
 
         // Sort items
-        if ("Name".equals(currentSortBy)) {
-            filteredItems.sort(Comparator.comparing(MediaItem::getName, String.CASE_INSENSITIVE_ORDER));
-        } else if ("Date Modified".equals(currentSortBy)) {
-            filteredItems.sort((a, b) -> Long.compare(b.getFile().lastModified(), a.getFile().lastModified()));
+        Comparator<MediaItem> order = currentSortOrder();
+        if (order != null) {
+            filteredItems.sort(order);
         }
 
         // Display items or show no results message
@@ -634,6 +948,7 @@ public class GalleryController {
 
     private void removeFolder(String folderPath) {
         selectedFolders.remove(folderPath);
+        folderWatcher.unwatch(new File(folderPath).toPath());
         HBox card = folderCards.remove(folderPath);
         if (card != null) {
             folderList.getChildren().remove(card);
@@ -651,42 +966,51 @@ public class GalleryController {
         }
 
         // Remove media items from this folder and clear their thumbnails
-        mediaItems.removeIf(item -> {
-            if (item.getPath().startsWith(folderPath)) {
-                item.setThumbnail(null); // Release thumbnail reference
-                return true;
-            }
-            return false;
-        });
+        for (MediaItem item : library.removeUnder(folderPath)) {
+            item.setThumbnail(null); // Release thumbnail reference
+        }
 
         refreshGallery();
         updateHeaderInfo();
     }
 
     private void scanFolder(File folder) {
-        // Scan folder sequentially to prevent memory spikes
-        // Uses bounded thread pool internally for thumbnail generation
+        scanFolder(folder, false);
+    }
+
+    /**
+     * @param revalidate reuse catalog records of directories whose mtime is unchanged, then reconcile the
+     *                   library with the result (items restored from the catalog may be gone or edited)
+     */
+    private void scanFolder(File folder, boolean revalidate) {
+        // Items stream in while the tree is walked; each batch gets its cards and thumbnail requests
+        // right away instead of after the whole walk
+        pendingScans++;
+        // Watch before walking, so files added during the scan aren't missed (duplicates are skipped)
+        folderWatcher.watch(folder.toPath());
         CompletableFuture.runAsync(() -> {
-            List<MediaItem> newItems = new ArrayList<>();
-            Map<String, Integer> folderMediaCount = new HashMap<>();
-
-            // Scan files first (fast, no I/O)
-            scanFolderRecursive(folder, newItems, folderMediaCount);
-
-            // Add items to gallery on UI thread
-            Platform.runLater(() -> {
-                // Add only new items that don't already exist (prevent duplicates)
-                for (MediaItem newItem : newItems) {
-                    boolean alreadyExists = false;
-                    for (MediaItem existingItem : mediaItems) {
-                        if (existingItem.getPath().equals(newItem.getPath())) {
-                            alreadyExists = true;
-                            break;
-                        }
-                    }
-                    if (!alreadyExists) {
-                        mediaItems.add(newItem);
-                    }
+            // Batches pass through header reads in order, then onto the FX thread in the same order
+            long start = System.nanoTime();
+            CompletableFuture<?>[] delivery = { CompletableFuture.completedFuture(null) };
+            MediaScanner.Result scan = MediaScanner.scan(folder, batch -> delivery[0] = delivery[0]
+                    .thenRunAsync(() -> readImageMetadata(batch))
+                    .thenRun(() -> Platform.runLater(() -> addScanBatch(batch))), revalidate ? catalog : null);
+            Map<String, Integer> folderMediaCount = scan.getFolderMediaCount();
+            if (revalidate) {
+                System.out.println("Revalidated " + folder + " in " + (System.nanoTime() - start) / 1_000_000
+                        + "ms: " + (scan.getDirectories().size() - scan.getReusedDirectories()) + " of "
+                        + scan.getDirectories().size() + " folders changed");
+            }
+
+            delivery[0].whenComplete((ignored, error) -> {
+                // Headers of listed items have been read by now, so they are saved with the catalog
+                catalog.putAll(scan.getDirectories());
+                catalog.save();
+            }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                if (revalidate) {
+                    // Drop restored items that are gone, replace edited ones
+                    applyFolderChanges(new ArrayList<>(), new ArrayList<>(),
+                            Map.of(folder.getAbsolutePath(), scan.getItems()));
                 }
 
                 // Only add folders that contain media files
@@ -701,13 +1025,256 @@ public class GalleryController {
                     }
                 }
 
-                refreshGallery();
+                if (library.isEmpty()) {
+                    refreshGallery(); // Nothing found - show the empty state
+                }
                 updateHeaderInfo();
+                onScanFinished();
+            }));
+        }).exceptionally(e -> {
+            System.out.println("Folder scan failed: " + e.getMessage());
+            Platform.runLater(this::onScanFinished);
+            return null;
+        });
+    }
+
+    /**
+     * Dimensions and orientation from image headers (cached by path + mtime), in parallel - a few
+     * hundred bytes per file, so cards know their shape before any thumbnail exists
+     */
+    private static void readImageMetadata(List<MediaItem> items) {
+        items.parallelStream()
+                .filter(item -> item.getType() == MediaItem.MediaType.IMAGE)
+                .forEach(item -> {
+                    ImageMetadata metadata = ThumbnailCache.getImageMetadata(item.getFile());
+                    if (metadata.isKnown()) {
+                        item.setMetadata(metadata);
+                    }
+                });
+    }
+
+    /**
+     * Add one batch of scanned items: new cards go straight into place, then thumbnails are requested
+     */
+    private void addScanBatch(List<MediaItem> batch) {
+        // Add only new items that don't already exist (prevent duplicates, e.g. overlapping rescans)
+        List<MediaItem> added = new ArrayList<>();
+        for (MediaItem item : batch) {
+            if (library.add(item)) {
+                added.add(item);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+
+        if (!(rootPane.getCenter() instanceof ScrollPane) || galleryPane.getChildren().isEmpty()) {
+            // Replaces the empty state or no-results message
+            refreshGallery();
+        } else {
+            insertCards(added);
+        }
+        updateHeaderInfo();
+
+        // Now progressively generate thumbnails (throttled by the scheduler)
+        generateThumbnailsProgressively(added);
+    }
+
+    /**
+     * Insert cards for new items at their place in the current sort order (appended when unsorted)
+     * without rebuilding the cards already shown
+     */
+    private void insertCards(List<MediaItem> items) {
+        Comparator<MediaItem> order = currentSortOrder();
+        List<javafx.scene.Node> cards = galleryPane.getChildren();
+        for (MediaItem item : items) {
+            if (!matchesFilters(item)) {
+                continue;
+            }
+            StackPane card = createMediaCard(item);
+            if (order == null) {
+                cards.add(card);
+                continue;
+            }
+            // Binary search on the sorted cards; equal items go after existing ones
+            int low = 0;
+            int high = cards.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (order.compare((MediaItem) cards.get(middle).getUserData(), item) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            cards.add(low, card);
+        }
+        itemCountLabel.setText(cards.size() + " items");
+    }
+
+    /**
+     * Watcher callback (watcher thread): turn debounced changes into items off the FX thread - new and
+     * edited files are classified and their headers read, re-listed folders are scanned - then apply them
+     */
+    private void onFolderChanges(Path root, List<FolderWatcher.Change> changes) {
+        List<String> deleted = new ArrayList<>();
+        List<MediaItem> updated = new ArrayList<>();
+        Map<String, List<MediaItem>> relisted = new HashMap<>();
+        for (FolderWatcher.Change change : changes) {
+            Path path = change.getPath();
+            // The folder's entries changed - the next startup lists it again
+            if (path.getParent() != null) {
+                catalog.invalidate(path.getParent().toString());
+            }
+            if (change.getKind() == FolderWatcher.ChangeKind.DELETED) {
+                deleted.add(path.toString());
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                deleted.add(path.toString()); // Gone again before we got to it
+                continue;
+            }
+            if (attributes.isDirectory()) {
+                MediaScanner.Result scan = MediaScanner.scan(path.toFile());
+                relisted.put(path.toString(), scan.getItems());
+                catalog.putAll(scan.getDirectories());
+            } else if (attributes.isRegularFile()) {
+                File file = path.toFile();
+                long size = attributes.size();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                MediaItem.MediaType type = ThumbnailGenerator.mediaTypeOf(
+                        MediaTypeClassifier.classify(file, size, lastModified));
+                if (type != null) {
+                    updated.add(new MediaItem(file, type, size, lastModified));
+                } else {
+                    deleted.add(path.toString()); // No longer (or never) media, e.g. truncated mid-copy
+                }
+            }
+        }
+        List<MediaItem> found = new ArrayList<>(updated);
+        for (List<MediaItem> items : relisted.values()) {
+            found.addAll(items);
+        }
+        readImageMetadata(found);
+        Platform.runLater(() -> applyFolderChanges(deleted, updated, relisted));
+    }
+
+    /**
+     * Apply watcher changes to the library (FX thread): drop deleted and replaced items with their cards
+     * and cached thumbnails, then add new and edited ones like a scan batch
+     */
+    private void applyFolderChanges(List<String> deleted, List<MediaItem> updated,
+            Map<String, List<MediaItem>> relisted) {
+        Map<String, MediaItem> current = new HashMap<>();
+        for (MediaItem item : updated) {
+            current.put(item.getPath(), item);
+        }
+        for (List<MediaItem> items : relisted.values()) {
+            for (MediaItem item : items) {
+                current.put(item.getPath(), item);
+            }
+        }
 
-                // Now progressively generate thumbnails (throttled by semaphore)
-                generateThumbnailsProgressively(newItems);
+        // An item goes if its file was deleted, was edited (new version in current), or is missing from a
+        // folder that was listed again - all answered by the library's path and folder indexes
+        Set<MediaItem> removedSet = new LinkedHashSet<>();
+        for (String path : deleted) {
+            MediaItem item = library.get(path);
+            if (item != null) {
+                removedSet.add(item);
+            }
+            removedSet.addAll(library.itemsUnder(path)); // In case a whole folder went
+        }
+        for (String folderPath : relisted.keySet()) {
+            for (MediaItem item : library.itemsUnder(folderPath)) {
+                if (!current.containsKey(item.getPath())) {
+                    removedSet.add(item);
+                }
+            }
+        }
+        for (MediaItem replacement : current.values()) {
+            MediaItem item = library.get(replacement.getPath());
+            if (item != null && (replacement.getSize() != item.getSize()
+                    || replacement.getLastModified() != item.getLastModified())) {
+                removedSet.add(item);
+            }
+        }
+        List<MediaItem> removed = new ArrayList<>(removedSet);
+        if (!removed.isEmpty()) {
+            galleryPane.getChildren().removeIf(node -> {
+                if (removedSet.contains(node.getUserData())) {
+                    clearImageViewsRecursive(node);
+                    return true;
+                }
+                return false;
             });
-        });
+            for (MediaItem item : removed) {
+                item.setThumbnail(null); // Release thumbnail reference
+                library.remove(item.getPath());
+            }
+            // The old versions' thumbnails can't be looked up any more - drop them now instead of waiting
+            // for the next maintenance sweep
+            CompletableFuture.runAsync(() -> {
+                for (MediaItem item : removed) {
+                    if (item.getLastModified() != 0) {
+                        ThumbnailCache.removeCachedThumbnail(item.getFile(), item.getLastModified());
+                    }
+                }
+            });
+            if (galleryPane.getChildren().isEmpty()) {
+                refreshGallery(); // Empty state or no-results message
+            } else {
+                itemCountLabel.setText(galleryPane.getChildren().size() + " items");
+            }
+        }
+
+        // New folders with media get a sidebar entry, like after a scan
+        List<MediaItem> added = new ArrayList<>();
+        for (MediaItem item : current.values()) {
+            if (!library.contains(item.getPath())) {
+                added.add(item);
+            }
+        }
+        added.sort(Comparator.comparing(MediaItem::getPath));
+        for (MediaItem item : added) {
+            String folderPath = item.getFile().getParentFile().getAbsolutePath();
+            if (!selectedFolders.contains(folderPath)) {
+                selectedFolders.add(folderPath);
+                addFolderToSidebar(new File(folderPath));
+            }
+        }
+        addScanBatch(added);
+        updateHeaderInfo();
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            System.out.println("Folder changes: " + added.size() + " added or updated, " + removed.size()
+                    + " removed");
+        }
+    }
+
+    private static boolean startsWithAny(String path, List<String> prefixes) {
+        for (String prefix : prefixes) {
+            if (path.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Once every scan is done, let the cache drop thumbnails of files that left the library
+     */
+    private void onScanFinished() {
+        if (--pendingScans > 0) {
+            return;
+        }
+        List<String> libraryPaths = new ArrayList<>(library.size());
+        for (MediaItem item : library.items()) {
+            libraryPaths.add(item.getPath());
+        }
+        ThumbnailCache.scheduleMaintenance(libraryPaths, new ArrayList<>(selectedFolders));
     }
 
     /**
@@ -715,57 +1282,33 @@ public class GalleryController {
      * Thumbnails are generated with bounded thread pool and semaphore throttling
      */
     private void generateThumbnailsProgressively(List<MediaItem> items) {
+        ThumbnailSize level = thumbnailLevel;
         for (MediaItem item : items) {
             if (item.getType() == MediaItem.MediaType.IMAGE) {
-                ThumbnailGenerator.generateImageThumbnail(item.getFile())
+                ThumbnailGenerator.generateImageThumbnail(item.getFile(), level)
                         .thenAccept(thumbnail -> {
                             if (thumbnail != null) {
-                                item.setThumbnail(thumbnail);
+                                item.setThumbnail(thumbnail, level);
                                 Platform.runLater(() -> updateGalleryItem(item));
                             }
                         });
             } else if (item.getType() == MediaItem.MediaType.VIDEO) {
-                ThumbnailGenerator.generateVideoThumbnail(item.getFile())
+                ThumbnailGenerator.generateVideoThumbnail(item.getFile(), level)
                         .thenAccept(thumbnail -> {
                             if (thumbnail != null) {
-                                item.setThumbnail(thumbnail);
+                                item.setThumbnail(thumbnail, level);
                                 Platform.runLater(() -> updateGalleryItem(item));
                             }
+                            // Scrub strip after the thumbnail, at background priority in the video engine
+                            if (thumbnail != null && !ThumbnailCache.isPlaceholderImage(thumbnail)
+                                    && !ThumbnailCache.hasCachedScrubStrip(item.getFile())) {
+                                ThumbnailGenerator.generateScrubStrip(item.getFile());
+                            }
                         });
             }
         }
     }
 
-    private void scanFolderRecursive(File folder, List<MediaItem> items, Map<String, Integer> folderMediaCount) {
-        File[] files = folder.listFiles();
-        int mediaFilesInThisFolder = 0;
-
-        if (files != null) {
-            for (File file : files) {
-                if (file.isDirectory()) {
-                    // Recursively scan subdirectories
-                    scanFolderRecursive(file, items, folderMediaCount);
-                } else if (file.isFile()) {
-                    // Just identify media files, don't generate thumbnails yet
-                    if (ThumbnailGenerator.isImageFile(file)) {
-                        MediaItem item = new MediaItem(file, MediaItem.MediaType.IMAGE);
-                        items.add(item);
-                        mediaFilesInThisFolder++;
-                    } else if (ThumbnailGenerator.isVideoFile(file)) {
-                        MediaItem item = new MediaItem(file, MediaItem.MediaType.VIDEO);
-                        items.add(item);
-                        mediaFilesInThisFolder++;
-                    }
-                }
-            }
-        }
-
-        // Only track this folder if it has media files
-        if (mediaFilesInThisFolder > 0) {
-            folderMediaCount.put(folder.getAbsolutePath(), mediaFilesInThisFolder);
-        }
-    }
-
     private void refreshGallery() {
         applyFiltersAndSort();
 
@@ -795,13 +1338,11 @@ public class GalleryController {
         // Reset card style
         card.setStyle("-fx-background-color: transparent; -fx-cursor: hand;");
 
-        // If thumbnail was reclaimed by GC, reload from cache
+        // If thumbnail was reclaimed by GC, reload from cache (memory now, disk in the background)
         if (thumbnail == null) {
-            thumbnail = ThumbnailCache.getCachedThumbnail(item.getFile());
-            if (thumbnail != null) {
-                item.setThumbnail(thumbnail); // Restore WeakReference
-            }
+            thumbnail = thumbnailForCard(item);
         }
+        double cellSize = galleryPane.getCellSize();
 
         if (thumbnail != null) {
             // Add thumbnail - fill cell like CSS object-fit: cover
@@ -809,24 +1350,24 @@ public class GalleryController {
             thumbnailView.setPreserveRatio(true); // Don't squeeze
             thumbnailView.setSmooth(false); // Faster rendering, less memory
 
-            // Calculate size to fill the cell (cover behavior) - 298x298
-            double imageWidth = thumbnail.getWidth();
-            double imageHeight = thumbnail.getHeight();
+            // Calculate size to fill the cell (cover behavior), as the image appears once oriented
+            int orientation = item.getOrientation();
+            boolean quarterTurn = ImageMetadata.isQuarterTurn(orientation);
+            double imageWidth = quarterTurn ? thumbnail.getHeight() : thumbnail.getWidth();
+            double imageHeight = quarterTurn ? thumbnail.getWidth() : thumbnail.getHeight();
             double imageRatio = imageWidth / imageHeight;
             double cellRatio = 1.0; // Square cell
 
             if (imageRatio > cellRatio) {
                 // Image is wider - fit to height, overflow width
-                thumbnailView.setFitHeight(300);
-                thumbnailView.setFitWidth(300 * imageRatio);
+                fitOriented(thumbnailView, cellSize * imageRatio, cellSize, orientation);
             } else {
                 // Image is taller - fit to width, overflow height
-                thumbnailView.setFitWidth(300);
-                thumbnailView.setFitHeight(300 / imageRatio);
+                fitOriented(thumbnailView, cellSize, cellSize / imageRatio, orientation);
             }
 
             // Clip to square bounds
-            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(300, 300);
+            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(cellSize, cellSize);
             card.setClip(clip);
 
             // Start invisible for fade-in animation
@@ -876,24 +1417,19 @@ public class GalleryController {
     }
 
     private StackPane createMediaCard(MediaItem item) {
-        // Card is exactly 300x300, gap of 1px creates thin uniform spacing
+        // Card is exactly one cell, gap of 1px creates thin uniform spacing
+        double cellSize = galleryPane.getCellSize();
         StackPane card = new StackPane();
         card.setStyle("-fx-background-color: transparent; -fx-cursor: hand;");
-        card.setPrefSize(300, 300);
-        card.setMinSize(300, 300);
-        card.setMaxSize(300, 300);
+        card.setPrefSize(cellSize, cellSize);
+        card.setMinSize(cellSize, cellSize);
+        card.setMaxSize(cellSize, cellSize);
 
         // Store reference to item for efficient updates
         card.setUserData(item);
 
-        // Try to get thumbnail - check cache if null
-        Image thumbnail = item.getThumbnail();
-        if (thumbnail == null) {
-            thumbnail = ThumbnailCache.getCachedThumbnail(item.getFile());
-            if (thumbnail != null) {
-                item.setThumbnail(thumbnail); // Restore from cache
-            }
-        }
+        // Try to get thumbnail at the current level - memory now, disk or lazy generation in background
+        Image thumbnail = thumbnailForCard(item);
 
         if (thumbnail != null) {
             // Thumbnail loaded - fill cell like CSS object-fit: cover
@@ -901,24 +1437,24 @@ public class GalleryController {
             thumbnailView.setPreserveRatio(true); // Don't squeeze
             thumbnailView.setSmooth(false); // Faster rendering, less memory
 
-            // Calculate size to fill the cell (cover behavior) - 298x298
-            double imageWidth = thumbnail.getWidth();
-            double imageHeight = thumbnail.getHeight();
+            // Calculate size to fill the cell (cover behavior), as the image appears once oriented
+            int orientation = item.getOrientation();
+            boolean quarterTurn = ImageMetadata.isQuarterTurn(orientation);
+            double imageWidth = quarterTurn ? thumbnail.getHeight() : thumbnail.getWidth();
+            double imageHeight = quarterTurn ? thumbnail.getWidth() : thumbnail.getHeight();
             double imageRatio = imageWidth / imageHeight;
             double cellRatio = 1.0; // Square cell
 
             if (imageRatio > cellRatio) {
                 // Image is wider - fit to height, overflow width
-                thumbnailView.setFitHeight(300);
-                thumbnailView.setFitWidth(300 * imageRatio);
+                fitOriented(thumbnailView, cellSize * imageRatio, cellSize, orientation);
             } else {
                 // Image is taller - fit to width, overflow height
-                thumbnailView.setFitWidth(300);
-                thumbnailView.setFitHeight(300 / imageRatio);
+                fitOriented(thumbnailView, cellSize, cellSize / imageRatio, orientation);
             }
 
-            // Clip to square bounds (300x300)
-            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(300, 300);
+            // Clip to square cell bounds
+            javafx.scene.shape.Rectangle clip = new javafx.scene.shape.Rectangle(cellSize, cellSize);
             card.setClip(clip);
 
             card.getChildren().add(thumbnailView);
@@ -950,16 +1486,73 @@ public class GalleryController {
         card.setOnMouseExited(e -> {
             card.setOpacity(1.0);
         });
+        if (item.getType() == MediaItem.MediaType.VIDEO) {
+            setupHoverScrubbing(card, item);
+        }
 
         // Click to open fullscreen viewer
         card.setOnMouseClicked(e -> {
-            currentMediaIndex = mediaItems.indexOf(item);
+            currentMediaItem = item;
             showFullscreenViewer(item);
         });
 
         return card;
     }
 
+    /**
+     * Hovering a video card steps through its scrub strip by pointer position
+     * Only the stored strip is read (memory, else disk in the background) - no video is opened on hover
+     */
+    private void setupHoverScrubbing(StackPane card, MediaItem item) {
+        Image[] strip = { null };
+        Image[] thumbnail = { null };
+
+        card.addEventHandler(javafx.scene.input.MouseEvent.MOUSE_ENTERED, e -> {
+            strip[0] = ThumbnailCache.getMemoryCachedScrubStrip(item.getFile());
+            if (strip[0] == null && ThumbnailCache.hasCachedScrubStrip(item.getFile())) {
+                ThumbnailCache.loadCachedScrubStripAsync(item.getFile(), ThumbnailGenerator.getScrubStripMaxEdge())
+                        .thenAccept(loaded -> Platform.runLater(() -> {
+                            if (card.isHover()) {
+                                strip[0] = loaded;
+                            }
+                        }));
+            }
+        });
+        card.addEventHandler(javafx.scene.input.MouseEvent.MOUSE_MOVED, e -> {
+            ImageView view = findThumbnailView(card);
+            if (strip[0] == null || view == null) {
+                return;
+            }
+            if (view.getImage() != strip[0]) {
+                thumbnail[0] = view.getImage();
+                view.setImage(strip[0]);
+            }
+            int frames = ThumbnailGenerator.getScrubFrameCount();
+            double frameWidth = strip[0].getWidth() / frames;
+            int frame = (int) Math.max(0, Math.min(frames - 1, e.getX() / card.getWidth() * frames));
+            view.setViewport(new javafx.geometry.Rectangle2D(frame * frameWidth, 0, frameWidth,
+                    strip[0].getHeight()));
+        });
+        card.addEventHandler(javafx.scene.input.MouseEvent.MOUSE_EXITED, e -> {
+            ImageView view = findThumbnailView(card);
+            if (view != null && strip[0] != null && view.getImage() == strip[0]) {
+                view.setViewport(null);
+                view.setImage(thumbnail[0]);
+            }
+            strip[0] = null;
+            thumbnail[0] = null;
+        });
+    }
+
+    private static ImageView findThumbnailView(StackPane card) {
+        for (javafx.scene.Node child : card.getChildren()) {
+            if (child instanceof ImageView) {
+                return (ImageView) child;
+            }
+        }
+        return null;
+    }
+
     private void showFullscreenViewer(MediaItem item) {
         // Switch to fullscreen mode for media viewing
         Stage stage = (Stage) rootPane.getScene().getWindow();
@@ -1038,6 +1631,50 @@ public class GalleryController {
         fullscreenViewer.requestFocus();
     }
 
+    /**
+     * Size an image view to appear displayWidth x displayHeight on screen and apply the EXIF orientation
+     * Pixels are stored as the camera sensor saw them; rotating the view keeps thumbnails and cache as is
+     */
+    private static void fitOriented(ImageView view, double displayWidth, double displayHeight, int orientation) {
+        boolean quarterTurn = ImageMetadata.isQuarterTurn(orientation);
+        view.setFitWidth(quarterTurn ? displayHeight : displayWidth);
+        view.setFitHeight(quarterTurn ? displayWidth : displayHeight);
+
+        double rotate = 0;
+        double scaleX = 1;
+        double scaleY = 1;
+        switch (orientation) {
+            case 2: // Mirrored
+                scaleX = -1;
+                break;
+            case 3:
+                rotate = 180;
+                break;
+            case 4: // Flipped vertically
+                scaleY = -1;
+                break;
+            case 5: // Transposed
+                rotate = 90;
+                scaleY = -1;
+                break;
+            case 6:
+                rotate = 90;
+                break;
+            case 7: // Transversed
+                rotate = 270;
+                scaleY = -1;
+                break;
+            case 8:
+                rotate = 270;
+                break;
+            default:
+                break;
+        }
+        view.setRotate(rotate);
+        view.setScaleX(scaleX);
+        view.setScaleY(scaleY);
+    }
+
     private void setupImageViewer(StackPane container, MediaItem item, HBox topBar) {
         BorderPane layout = new BorderPane();
         layout.setStyle("-fx-background-color: #000000;");
@@ -1057,7 +1694,10 @@ public class GalleryController {
                 double containerHeight = getHeight();
 
                 if (containerWidth > 0 && containerHeight > 0) {
-                    double imageRatio = image.getWidth() / image.getHeight();
+                    // Fit the image as it appears once oriented
+                    boolean quarterTurn = ImageMetadata.isQuarterTurn(item.getOrientation());
+                    double imageRatio = quarterTurn ? image.getHeight() / image.getWidth()
+                            : image.getWidth() / image.getHeight();
                     double containerRatio = containerWidth / containerHeight;
 
                     double newWidth, newHeight;
@@ -1072,12 +1712,11 @@ public class GalleryController {
                         newWidth = containerHeight * imageRatio;
                     }
 
-                    imageView.setFitWidth(newWidth);
-                    imageView.setFitHeight(newHeight);
+                    fitOriented(imageView, newWidth, newHeight, item.getOrientation());
 
-                    // Center the image
-                    double x = (containerWidth - newWidth) / 2;
-                    double y = (containerHeight - newHeight) / 2;
+                    // Center the image (rotation is about the center of the unrotated view)
+                    double x = (containerWidth - imageView.getFitWidth()) / 2;
+                    double y = (containerHeight - imageView.getFitHeight()) / 2;
                     imageView.relocate(x, y);
                 }
             }
@@ -1575,16 +2214,18 @@ public class GalleryController {
     }
 
     private void navigateToNextMedia() {
-        if (currentMediaIndex < mediaItems.size() - 1) {
-            currentMediaIndex++;
-            switchToMedia(mediaItems.get(currentMediaIndex));
+        MediaItem next = currentMediaItem != null ? library.next(currentMediaItem) : null;
+        if (next != null) {
+            currentMediaItem = next;
+            switchToMedia(next);
         }
     }
 
     private void navigateToPreviousMedia() {
-        if (currentMediaIndex > 0) {
-            currentMediaIndex--;
-            switchToMedia(mediaItems.get(currentMediaIndex));
+        MediaItem previous = currentMediaItem != null ? library.previous(currentMediaItem) : null;
+        if (previous != null) {
+            currentMediaItem = previous;
+            switchToMedia(previous);
         }
     }
 
@@ -1703,4 +2344,16 @@ public class GalleryController {
         }
     }
 
+    /**
+     * Level load in flight for one card
+     */
+    private static final class PendingLoad {
+        final String path;
+        final CompletableFuture<Image> future;
+
+        PendingLoad(String path, CompletableFuture<Image> future) {
+            this.path = path;
+            this.future = future;
+        }
+    }
 }
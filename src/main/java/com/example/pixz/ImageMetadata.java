@@ -0,0 +1,226 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Pixel size, EXIF orientation and capture time of an image, read from its header only
+ * JPEG: segments are walked by length (only the EXIF segment and the frame header are read); PNG: IHDR;
+ * GIF: logical screen descriptor; BMP: DIB header - a few hundred bytes per file, no pixels decoded
+ */
+public class ImageMetadata {
+    public static final int ORIENTATION_NORMAL = 1;
+
+    // Returned for files whose header can't be read (cached too, so they aren't re-read every scan)
+    public static final ImageMetadata UNKNOWN = new ImageMetadata(0, 0, ORIENTATION_NORMAL, 0);
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    private static final int TAG_DATE_TIME = 0x0132;
+    private static final int TAG_EXIF_IFD = 0x8769;
+    private static final int TAG_DATE_TIME_ORIGINAL = 0x9003;
+    private static final DateTimeFormatter EXIF_DATE = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+
+    private final int width;
+    private final int height;
+    private final int orientation;
+    private final long captureMillis;
+
+    public ImageMetadata(int width, int height, int orientation, long captureMillis) {
+        this.width = width;
+        this.height = height;
+        this.orientation = orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+        this.captureMillis = captureMillis;
+    }
+
+    /**
+     * Stored pixel width (before orientation is applied)
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * EXIF orientation 1-8 (1 = upright)
+     */
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * Capture time from EXIF (local time of the camera), or 0 if unknown
+     */
+    public long getCaptureMillis() {
+        return captureMillis;
+    }
+
+    public boolean isKnown() {
+        return width > 0 && height > 0;
+    }
+
+    /**
+     * Whether the orientation turns the image by 90 or 270 degrees (width and height swap on screen)
+     */
+    public static boolean isQuarterTurn(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * Read the header of an image file; UNKNOWN if the format isn't recognised or the header is damaged
+     */
+    public static ImageMetadata read(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            byte[] head = readAt(channel, 0, 32);
+            if (head.length >= 4 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8) {
+                return readJpeg(channel);
+            }
+            if (head.length >= 24 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+                return new ImageMetadata(u32(head, 16, false), u32(head, 20, false), ORIENTATION_NORMAL, 0);
+            }
+            if (head.length >= 10 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F') {
+                return new ImageMetadata(u16(head, 6, true), u16(head, 8, true), ORIENTATION_NORMAL, 0);
+            }
+            if (head.length >= 26 && head[0] == 'B' && head[1] == 'M') {
+                int headerSize = u32(head, 14, true);
+                if (headerSize == 12) { // OS/2 BITMAPCOREHEADER
+                    return new ImageMetadata(u16(head, 18, true), u16(head, 20, true), ORIENTATION_NORMAL, 0);
+                }
+                // Negative height means top-down rows
+                return new ImageMetadata(u32(head, 18, true), Math.abs(u32(head, 22, true)), ORIENTATION_NORMAL, 0);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Damaged header - treated as unknown
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * Walk segments up to the frame header; EXIF (APP1) always comes before it
+     */
+    private static ImageMetadata readJpeg(FileChannel channel) throws IOException {
+        int orientation = ORIENTATION_NORMAL;
+        long captureMillis = 0;
+        long size = channel.size();
+        long pos = 2;
+        while (pos + 4 <= size) {
+            byte[] marker = readAt(channel, pos, 4);
+            if (marker.length < 4 || (marker[0] & 0xFF) != 0xFF) {
+                break;
+            }
+            int type = marker[1] & 0xFF;
+            if (type == 0xFF) {
+                pos++; // Fill byte
+                continue;
+            }
+            if (type == 0xDA) {
+                break; // Start of scan without a frame header
+            }
+            int length = u16(marker, 2, false);
+            if (type >= 0xC0 && type <= 0xCF && type != 0xC4 && type != 0xC8 && type != 0xCC) {
+                byte[] frame = readAt(channel, pos + 4, 5);
+                if (frame.length < 5) {
+                    break;
+                }
+                return new ImageMetadata(u16(frame, 3, false), u16(frame, 1, false), orientation, captureMillis);
+            }
+            if (type == 0xE1 && length > 8) {
+                byte[] segment = readAt(channel, pos + 4, length - 2);
+                if (segment.length > 14 && new String(segment, 0, 6, StandardCharsets.ISO_8859_1).equals("Exif\0\0")) {
+                    long[] exif = readExif(segment, 6);
+                    orientation = (int) exif[0];
+                    captureMillis = exif[1];
+                }
+            }
+            pos += 2 + length;
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * {orientation, captureMillis} from a TIFF structure (IFD0 and the EXIF sub-IFD)
+     */
+    private static long[] readExif(byte[] b, int tiff) {
+        long[] result = { ORIENTATION_NORMAL, 0 };
+        boolean little = b[tiff] == 'I';
+        int ifd0 = tiff + u32(b, tiff + 4, little);
+        int exifIfd = -1;
+        long dateTime = 0;
+        int count = ifd0 >= tiff && ifd0 + 2 <= b.length ? u16(b, ifd0, little) : 0;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd0 + 2 + i * 12;
+            if (entry + 12 > b.length) {
+                break;
+            }
+            int tag = u16(b, entry, little);
+            if (tag == TAG_ORIENTATION) {
+                result[0] = u16(b, entry + 8, little);
+            } else if (tag == TAG_DATE_TIME) {
+                dateTime = parseDate(b, tiff + u32(b, entry + 8, little));
+            } else if (tag == TAG_EXIF_IFD) {
+                exifIfd = tiff + u32(b, entry + 8, little);
+            }
+        }
+        result[1] = dateTime;
+
+        // DateTimeOriginal (shutter time) beats DateTime (last edit)
+        count = exifIfd >= tiff && exifIfd + 2 <= b.length ? u16(b, exifIfd, little) : 0;
+        for (int i = 0; i < count; i++) {
+            int entry = exifIfd + 2 + i * 12;
+            if (entry + 12 > b.length) {
+                break;
+            }
+            if (u16(b, entry, little) == TAG_DATE_TIME_ORIGINAL) {
+                long original = parseDate(b, tiff + u32(b, entry + 8, little));
+                if (original > 0) {
+                    result[1] = original;
+                }
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static long parseDate(byte[] b, int pos) {
+        if (pos < 0 || pos + 19 > b.length) {
+            return 0;
+        }
+        try {
+            String text = new String(b, pos, 19, StandardCharsets.US_ASCII);
+            return LocalDateTime.parse(text, EXIF_DATE).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (RuntimeException e) {
+            return 0; // Blank ("    :  :  ") or malformed
+        }
+    }
+
+    private static byte[] readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == buffer.capacity() ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static int u16(byte[] b, int pos, boolean little) {
+        return little ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 : (b[pos] & 0xFF) << 8 | (b[pos + 1] & 0xFF);
+    }
+
+    private static int u32(byte[] b, int pos, boolean little) {
+        return little
+                ? (b[pos] & 0xFF) | (b[pos + 1] & 0xFF) << 8 | (b[pos + 2] & 0xFF) << 16 | (b[pos + 3] & 0xFF) << 24
+                : (b[pos] & 0xFF) << 24 | (b[pos + 1] & 0xFF) << 16 | (b[pos + 2] & 0xFF) << 8 | (b[pos + 3] & 0xFF);
+    }
+}
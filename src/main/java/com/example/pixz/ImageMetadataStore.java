@@ -0,0 +1,147 @@
+package com.example.pixz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Header metadata per path key (path + mtime), persisted next to the thumbnail pack so a rescan reads
+ * no image headers at all; editing a file changes its key, so records never go stale
+ * Thread-safe
+ */
+public class ImageMetadataStore {
+    private static final int FILE_MAGIC = 0x50584D31; // "PXM1"
+
+    // Save on the calling thread after this many unsaved changes (also saved on shutdown)
+    private static final int AUTO_SAVE_THRESHOLD = 1000;
+
+    private final Path file;
+    private final Map<String, Record> records = new HashMap<>();
+    private int unsavedChanges;
+
+    /**
+     * @param file where the table is persisted, or null to keep it in memory only
+     */
+    public ImageMetadataStore(Path file) {
+        this.file = file;
+        load();
+    }
+
+    public synchronized ImageMetadata get(String key) {
+        Record record = records.get(key);
+        return record != null ? record.metadata : null;
+    }
+
+    public synchronized void put(String key, String path, long lastModified, ImageMetadata metadata) {
+        records.put(key, new Record(path, lastModified, metadata));
+        if (++unsavedChanges >= AUTO_SAVE_THRESHOLD) {
+            save();
+        }
+    }
+
+    public synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Drop records of files that were deleted or edited since they were read
+     * Touches the filesystem once per record, so call it from a background thread
+     */
+    public int removeStale() {
+        List<Map.Entry<String, Record>> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records.entrySet());
+        }
+        int removed = 0;
+        for (Map.Entry<String, Record> entry : snapshot) {
+            Record record = entry.getValue();
+            if (new File(record.path).lastModified() != record.lastModified) {
+                synchronized (this) {
+                    if (records.remove(entry.getKey(), record)) {
+                        unsavedChanges++;
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Write the table atomically (temp file + rename)
+     */
+    public synchronized void save() {
+        if (file == null || unsavedChanges == 0) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(records.size());
+            for (Map.Entry<String, Record> entry : records.entrySet()) {
+                Record record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(record.path);
+                out.writeLong(record.lastModified);
+                out.writeInt(record.metadata.getWidth());
+                out.writeInt(record.metadata.getHeight());
+                out.writeByte(record.metadata.getOrientation());
+                out.writeLong(record.metadata.getCaptureMillis());
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to save image metadata: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            unsavedChanges = 0;
+        } catch (IOException e) {
+            System.out.println("Failed to save image metadata: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                ImageMetadata metadata = new ImageMetadata(in.readInt(), in.readInt(), in.readByte(), in.readLong());
+                records.put(key, new Record(path, lastModified, metadata));
+            }
+        } catch (IOException e) {
+            // Headers are cheap to read again
+            System.out.println("Image metadata unreadable, starting empty: " + e.getMessage());
+            records.clear();
+        }
+    }
+
+    private static final class Record {
+        final String path;
+        final long lastModified;
+        final ImageMetadata metadata;
+
+        Record(String path, long lastModified, ImageMetadata metadata) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -9,9 +9,12 @@ import javafx.scene.layout.Pane;
  * Custom layout pane that arranges children in a uniform grid
  */
 public class MasonryPane extends Pane {
-    private static final double CELL_SIZE = 300; // Size of each thumbnail
+    public static final double DEFAULT_CELL_SIZE = 300; // Size of each thumbnail
+    public static final double MIN_CELL_SIZE = 100;
+    public static final double MAX_CELL_SIZE = 600;
     private static final double GAP = 2; // 2px gap between items
     private int numColumns = 3;
+    private double cellSize = DEFAULT_CELL_SIZE;
 
     public MasonryPane() {
         super();
@@ -24,11 +27,41 @@ public class MasonryPane extends Pane {
         });
     }
 
+    /**
+     * Cell edge in layout pixels (clamped to MIN_CELL_SIZE..MAX_CELL_SIZE)
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    public void setCellSize(double cellSize) {
+        double clamped = Math.max(MIN_CELL_SIZE, Math.min(MAX_CELL_SIZE, cellSize));
+        if (clamped != this.cellSize) {
+            this.cellSize = clamped;
+            requestLayout();
+        }
+    }
+
+    /**
+     * Children whose cells overlap the band [minY, maxY] of this pane, as {first, end} (end exclusive)
+     * Cells are equal squares filled row by row, so child i sits in row i / columns - no per-node bounds needed
+     */
+    public int[] getIndexRange(double minY, double maxY) {
+        int count = getChildren().size();
+        double rowHeight = cellSize + GAP;
+        double top = getInsets().getTop();
+        int firstRow = (int) Math.max(0, Math.floor((minY - top) / rowHeight));
+        int lastRow = (int) Math.floor((maxY - top) / rowHeight);
+        int first = (int) Math.min(count, (long) firstRow * numColumns);
+        int end = (int) Math.min(count, Math.max(0, (long) (lastRow + 1) * numColumns));
+        return new int[] { first, Math.max(first, end) };
+    }
+
     private void calculateColumns() {
         double availableWidth = getWidth() - getInsets().getLeft() - getInsets().getRight();
         if (availableWidth > 0) {
             // Calculate how many columns fit: (width + gap) / (cellSize + gap)
-            numColumns = Math.max(1, (int) ((availableWidth + GAP) / (CELL_SIZE + GAP)));
+            numColumns = Math.max(1, (int) ((availableWidth + GAP) / (cellSize + GAP)));
         }
     }
 
@@ -60,14 +93,14 @@ public class MasonryPane extends Pane {
             }
             
             // Calculate exact position with gap
-            double x = leftInset + shortestColumn * (CELL_SIZE + GAP);
+            double x = leftInset + shortestColumn * (cellSize + GAP);
             double y = topInset + columnHeights[shortestColumn];
             
             // Position the child as exact square
-            child.resizeRelocate(x, y, CELL_SIZE, CELL_SIZE);
+            child.resizeRelocate(x, y, cellSize, cellSize);
             
             // Update column height: add cell size + gap
-            columnHeights[shortestColumn] += CELL_SIZE + GAP;
+            columnHeights[shortestColumn] += cellSize + GAP;
         }
         
         // Set the preferred height of the pane to the tallest column
@@ -81,7 +114,7 @@ public class MasonryPane extends Pane {
 
     @Override
     protected double computePrefWidth(double height) {
-        return numColumns * (CELL_SIZE + GAP) - GAP + getInsets().getLeft() + getInsets().getRight();
+        return numColumns * (cellSize + GAP) - GAP + getInsets().getLeft() + getInsets().getRight();
     }
 
     @Override
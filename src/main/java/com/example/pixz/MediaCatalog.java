@@ -0,0 +1,222 @@
+package com.example.pixz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The library as last scanned, per directory: its mtime, subdirectories and media files (path, size,
+ * mtime, type, dimensions, orientation, capture time), persisted so startup can show the gallery without
+ * walking anything
+ * A directory's mtime changes when entries are added, removed or renamed in it, so a revalidating scan
+ * reuses the record of every directory whose mtime is unchanged and lists only the others. Files edited
+ * in place don't change their directory's mtime - the folder watcher catches those while the app runs
+ * and invalidates the directory, and Refresh always lists everything
+ * Thread-safe
+ */
+public class MediaCatalog {
+    private static final int FILE_MAGIC = 0x50584331; // "PXC1"
+
+    private final Path file;
+    private final Map<String, Directory> directories = new HashMap<>();
+    private boolean changed;
+
+    /**
+     * One scanned directory; items are shared with the library, so metadata read after the scan is saved
+     */
+    public static final class Directory {
+        final long lastModified;
+        final List<String> subdirectories;
+        final List<MediaItem> items;
+
+        public Directory(long lastModified, List<String> subdirectories, List<MediaItem> items) {
+            this.lastModified = lastModified;
+            this.subdirectories = subdirectories;
+            this.items = items;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public List<String> getSubdirectories() {
+            return subdirectories;
+        }
+
+        public List<MediaItem> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * @param file where the catalog is persisted, or null to keep it in memory only
+     */
+    public MediaCatalog(Path file) {
+        this.file = file;
+        long start = System.nanoTime();
+        load();
+        if (!directories.isEmpty()) {
+            System.out.println("Media catalog: " + directories.size() + " folders loaded in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+    }
+
+    public synchronized Directory get(String directory) {
+        return directories.get(directory);
+    }
+
+    /**
+     * Record directories from a scan, replacing what was known about them
+     */
+    public synchronized void putAll(Map<String, Directory> scanned) {
+        directories.putAll(scanned);
+        changed = true;
+    }
+
+    /**
+     * Forget a directory, so the next revalidation lists it again (its subdirectories keep their records)
+     */
+    public synchronized void invalidate(String directory) {
+        if (directories.remove(directory) != null) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Every cataloged item under a folder, following the recorded tree from it; null if the folder itself
+     * was never cataloged
+     */
+    public synchronized List<MediaItem> itemsUnder(String root) {
+        if (!directories.containsKey(root)) {
+            return null;
+        }
+        List<MediaItem> items = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            Directory directory = directories.get(pending.remove(pending.size() - 1));
+            if (directory != null) {
+                items.addAll(directory.items);
+                pending.addAll(directory.subdirectories);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Drop directories that aren't inside any of the given library folders
+     */
+    public synchronized void retainUnder(Collection<String> roots) {
+        List<String> prefixes = new ArrayList<>();
+        for (String root : roots) {
+            prefixes.add(root.endsWith(File.separator) ? root : root + File.separator);
+        }
+        changed |= directories.keySet().removeIf(directory -> {
+            String path = directory + File.separator;
+            for (String prefix : prefixes) {
+                if (path.startsWith(prefix)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    public synchronized int size() {
+        return directories.size();
+    }
+
+    /**
+     * Write the catalog atomically (temp file + rename)
+     */
+    public synchronized void save() {
+        if (file == null || !changed) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(directories.size());
+            for (Map.Entry<String, Directory> entry : directories.entrySet()) {
+                Directory directory = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(directory.lastModified);
+                out.writeInt(directory.subdirectories.size());
+                for (String subdirectory : directory.subdirectories) {
+                    out.writeUTF(subdirectory);
+                }
+                out.writeInt(directory.items.size());
+                for (MediaItem item : directory.items) {
+                    out.writeUTF(item.getName());
+                    out.writeByte(item.getType().ordinal());
+                    out.writeLong(item.getSize());
+                    out.writeLong(item.getLastModified());
+                    out.writeInt(item.getWidth());
+                    out.writeInt(item.getHeight());
+                    out.writeByte(item.getOrientation());
+                    out.writeLong(item.getCaptureTime());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to save media catalog: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+        } catch (IOException e) {
+            System.out.println("Failed to save media catalog: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        MediaItem.MediaType[] types = MediaItem.MediaType.values();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                int subdirectoryCount = in.readInt();
+                List<String> subdirectories = new ArrayList<>(subdirectoryCount);
+                for (int s = 0; s < subdirectoryCount; s++) {
+                    subdirectories.add(in.readUTF());
+                }
+                int itemCount = in.readInt();
+                List<MediaItem> items = new ArrayList<>(itemCount);
+                for (int f = 0; f < itemCount; f++) {
+                    File itemFile = new File(path, in.readUTF());
+                    MediaItem.MediaType type = types[in.readByte()];
+                    MediaItem item = new MediaItem(itemFile, type, in.readLong(), in.readLong());
+                    ImageMetadata metadata = new ImageMetadata(in.readInt(), in.readInt(), in.readByte(),
+                            in.readLong());
+                    if (metadata.isKnown()) {
+                        item.setMetadata(metadata);
+                    }
+                    items.add(item);
+                }
+                directories.put(path, new Directory(lastModified, subdirectories, items));
+            }
+        } catch (IOException | RuntimeException e) {
+            // The next scan rebuilds it
+            System.out.println("Media catalog unreadable, starting empty: " + e.getMessage());
+            directories.clear();
+        }
+    }
+}
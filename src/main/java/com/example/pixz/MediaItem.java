@@ -12,17 +12,28 @@ import javafx.scene.image.Image;
 public class MediaItem {
     private final File file;
     private WeakReference<Image> thumbnailRef;
+    private ThumbnailSize thumbnailSize; // Pyramid level of the held thumbnail
     private final MediaType type;
     private int width;
     private int height;
+    private int orientation = ImageMetadata.ORIENTATION_NORMAL; // EXIF orientation, applied when displayed
+    private long captureTime; // EXIF capture time in millis, 0 if unknown
+    private final long size; // Bytes, from the scan (0 if unknown)
+    private final long lastModified; // Millis, from the scan (0 if unknown)
 
     public enum MediaType {
         IMAGE, VIDEO
     }
 
     public MediaItem(File file, MediaType type) {
+        this(file, type, 0, 0);
+    }
+
+    public MediaItem(File file, MediaType type, long size, long lastModified) {
         this.file = file;
         this.type = type;
+        this.size = size;
+        this.lastModified = lastModified;
     }
 
     public File getFile() {
@@ -43,7 +54,19 @@ public class MediaItem {
      * Allows GC to reclaim memory when needed
      */
     public void setThumbnail(Image thumbnail) {
+        setThumbnail(thumbnail, ThumbnailSize.MEDIUM);
+    }
+
+    public void setThumbnail(Image thumbnail, ThumbnailSize size) {
         this.thumbnailRef = thumbnail != null ? new WeakReference<>(thumbnail) : null;
+        this.thumbnailSize = thumbnail != null ? size : null;
+    }
+
+    /**
+     * Level of the held thumbnail, or null if there is none
+     */
+    public ThumbnailSize getThumbnailSize() {
+        return getThumbnail() != null ? thumbnailSize : null;
     }
 
     public MediaType getType() {
@@ -66,6 +89,32 @@ public class MediaItem {
         this.height = height;
     }
 
+    /**
+     * Take dimensions, orientation and capture time from header metadata
+     */
+    public void setMetadata(ImageMetadata metadata) {
+        this.width = metadata.getWidth();
+        this.height = metadata.getHeight();
+        this.orientation = metadata.getOrientation();
+        this.captureTime = metadata.getCaptureMillis();
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getOrientation() {
+        return orientation;
+    }
+
+    public long getCaptureTime() {
+        return captureTime;
+    }
+
     public String getName() {
         return file.getName();
     }
@@ -0,0 +1,241 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * The loaded media, in the order it was added, with indexes so the gallery never scans the whole library
+ * for a single question:
+ * - path -> slot, for duplicate checks and lookups
+ * - folder -> slots of the items directly in it, sorted by folder path, so a folder's items and whole
+ *   subtrees (a range of folder keys) are found without looking at anything else
+ * - one bitset of slots per media type, for the photo and video filters
+ * Items live in slots that keep insertion order; removal leaves a hole, and the slots are compacted once
+ * holes outnumber items. Not thread-safe - owned by the FX thread like the gallery itself
+ */
+public class MediaLibrary {
+    // Compaction is skipped for small libraries, where holes cost nothing
+    private static final int MIN_COMPACT_SLOTS = 1024;
+
+    private final List<MediaItem> slots = new ArrayList<>(); // Null where an item was removed
+    private final Map<String, Integer> slotByPath = new HashMap<>();
+    private final TreeMap<String, BitSet> slotsByFolder = new TreeMap<>();
+    private final Map<MediaItem.MediaType, BitSet> slotsByType = new EnumMap<>(MediaItem.MediaType.class);
+    private int removedSlots;
+
+    public MediaLibrary() {
+        for (MediaItem.MediaType type : MediaItem.MediaType.values()) {
+            slotsByType.put(type, new BitSet());
+        }
+    }
+
+    public int size() {
+        return slotByPath.size();
+    }
+
+    public boolean isEmpty() {
+        return slotByPath.isEmpty();
+    }
+
+    public int count(MediaItem.MediaType type) {
+        return slotsByType.get(type).cardinality();
+    }
+
+    public boolean contains(String path) {
+        return slotByPath.containsKey(path);
+    }
+
+    public MediaItem get(String path) {
+        Integer slot = slotByPath.get(path);
+        return slot != null ? slots.get(slot) : null;
+    }
+
+    /**
+     * Add an item unless one with the same path is already loaded; true if it was added
+     */
+    public boolean add(MediaItem item) {
+        String path = item.getPath();
+        if (slotByPath.containsKey(path)) {
+            return false;
+        }
+        int slot = slots.size();
+        slots.add(item);
+        index(item, slot);
+        return true;
+    }
+
+    /**
+     * Remove the item with this path; returns it, or null if there was none
+     */
+    public MediaItem remove(String path) {
+        Integer slot = slotByPath.remove(path);
+        if (slot == null) {
+            return null;
+        }
+        MediaItem item = slots.set(slot, null);
+        String folder = folderOf(item);
+        BitSet folderSlots = slotsByFolder.get(folder);
+        folderSlots.clear(slot);
+        if (folderSlots.isEmpty()) {
+            slotsByFolder.remove(folder);
+        }
+        slotsByType.get(item.getType()).clear(slot);
+        removedSlots++;
+        compactIfSparse();
+        return item;
+    }
+
+    /**
+     * Remove everything in a folder and its subfolders; returns the removed items
+     */
+    public List<MediaItem> removeUnder(String folder) {
+        List<MediaItem> removed = itemsUnder(folder);
+        for (MediaItem item : removed) {
+            remove(item.getPath());
+        }
+        return removed;
+    }
+
+    public void clear() {
+        slots.clear();
+        slotByPath.clear();
+        slotsByFolder.clear();
+        for (BitSet typeSlots : slotsByType.values()) {
+            typeSlots.clear();
+        }
+        removedSlots = 0;
+    }
+
+    /**
+     * Every item, in the order they were added
+     */
+    public List<MediaItem> items() {
+        List<MediaItem> items = new ArrayList<>(size());
+        for (MediaItem item : slots) {
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Items of one type, in the order they were added
+     */
+    public List<MediaItem> items(MediaItem.MediaType type) {
+        return itemsAt(slotsByType.get(type));
+    }
+
+    /**
+     * Items directly in a folder (not in its subfolders), in the order they were added
+     */
+    public List<MediaItem> itemsIn(String folder) {
+        BitSet folderSlots = slotsByFolder.get(folder);
+        return folderSlots != null ? itemsAt(folderSlots) : new ArrayList<>();
+    }
+
+    /**
+     * Items in a folder and all its subfolders, in the order they were added
+     */
+    public List<MediaItem> itemsUnder(String folder) {
+        BitSet subtree = new BitSet();
+        for (BitSet folderSlots : subtreeFolders(folder).values()) {
+            subtree.or(folderSlots);
+        }
+        BitSet own = slotsByFolder.get(folder);
+        if (own != null) {
+            subtree.or(own);
+        }
+        return itemsAt(subtree);
+    }
+
+    /**
+     * Number of items directly in each folder that has any
+     */
+    public Map<String, Integer> folderCounts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<String, BitSet> entry : slotsByFolder.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().cardinality());
+        }
+        return counts;
+    }
+
+    /**
+     * The item added after this one, or null at the end (or if it isn't loaded)
+     */
+    public MediaItem next(MediaItem item) {
+        Integer slot = slotByPath.get(item.getPath());
+        if (slot == null) {
+            return null;
+        }
+        for (int i = slot + 1; i < slots.size(); i++) {
+            if (slots.get(i) != null) {
+                return slots.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The item added before this one, or null at the start (or if it isn't loaded)
+     */
+    public MediaItem previous(MediaItem item) {
+        Integer slot = slotByPath.get(item.getPath());
+        if (slot == null) {
+            return null;
+        }
+        for (int i = slot - 1; i >= 0; i--) {
+            if (slots.get(i) != null) {
+                return slots.get(i);
+            }
+        }
+        return null;
+    }
+
+    // Folders strictly below the given one: keys from "folder/" up to "folder/" followed by the highest char
+    private NavigableMap<String, BitSet> subtreeFolders(String folder) {
+        String prefix = folder.endsWith(File.separator) ? folder : folder + File.separator;
+        return slotsByFolder.subMap(prefix, true, prefix + Character.MAX_VALUE, true);
+    }
+
+    private List<MediaItem> itemsAt(BitSet slotSet) {
+        List<MediaItem> items = new ArrayList<>(slotSet.cardinality());
+        for (int slot = slotSet.nextSetBit(0); slot >= 0; slot = slotSet.nextSetBit(slot + 1)) {
+            items.add(slots.get(slot));
+        }
+        return items;
+    }
+
+    private void index(MediaItem item, int slot) {
+        slotByPath.put(item.getPath(), slot);
+        slotsByFolder.computeIfAbsent(folderOf(item), key -> new BitSet()).set(slot);
+        slotsByType.get(item.getType()).set(slot);
+    }
+
+    /**
+     * Close the holes left by removals once they are the majority, keeping the order
+     */
+    private void compactIfSparse() {
+        if (slots.size() < MIN_COMPACT_SLOTS || removedSlots * 2 < slots.size()) {
+            return;
+        }
+        List<MediaItem> items = items();
+        clear();
+        for (MediaItem item : items) {
+            slots.add(item);
+            index(item, slots.size() - 1);
+        }
+    }
+
+    private static String folderOf(MediaItem item) {
+        File parent = item.getFile().getAbsoluteFile().getParentFile();
+        return parent != null ? parent.getAbsolutePath() : "";
+    }
+}
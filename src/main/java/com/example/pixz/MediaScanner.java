@@ -0,0 +1,333 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Walks folder trees for media files, one ForkJoin task per directory
+ * Entries come from a DirectoryStream with their BasicFileAttributes (on Windows the attributes arrive
+ * with the directory listing itself, elsewhere one lstat per entry instead of separate isDirectory,
+ * isFile, length and lastModified calls), so size and mtime are known without extra I/O
+ * Subdirectories are forked, so a wide tree (NAS shares with thousands of folders) is listed by many
+ * threads at once; results keep the listing order of a sequential walk
+ * Items can also be streamed while the walk runs, in batches of up to BATCH_SIZE files or whatever was
+ * found in the last BATCH_INTERVAL_MS, so the gallery fills in long before a big tree is fully listed
+ * With a MediaCatalog the walk revalidates instead: directories whose mtime matches their catalog record
+ * are not listed, their recorded items and subdirectories are taken as they are
+ */
+public class MediaScanner {
+    // Directory listings wait on the disk or network - more threads than cores keep requests in flight
+    private static final int PARALLELISM = Math.max(8, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final int BATCH_SIZE = 500;
+    private static final long BATCH_INTERVAL_MS = 50;
+
+    // Publishes partial batches when the walk finds files slowly (e.g. a NAS listing)
+    private static final ScheduledExecutorService batchTimer = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "media-scan-batches");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final ForkJoinPool pool = new ForkJoinPool(PARALLELISM, forkJoinPool -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+        thread.setName("media-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    private MediaScanner() {
+    }
+
+    /**
+     * Media found under a root, and the number of media files directly in each folder that has any
+     */
+    public static final class Result {
+        final List<MediaItem> items;
+        final Map<String, Integer> folderMediaCount;
+        final Map<String, MediaCatalog.Directory> directories;
+        final int reusedDirectories;
+
+        Result(List<MediaItem> items, Map<String, Integer> folderMediaCount,
+                Map<String, MediaCatalog.Directory> directories, int reusedDirectories) {
+            this.items = items;
+            this.folderMediaCount = folderMediaCount;
+            this.directories = directories;
+            this.reusedDirectories = reusedDirectories;
+        }
+
+        public List<MediaItem> getItems() {
+            return items;
+        }
+
+        public Map<String, Integer> getFolderMediaCount() {
+            return folderMediaCount;
+        }
+
+        /**
+         * Catalog records of every directory walked (listed or reused), by absolute path
+         */
+        public Map<String, MediaCatalog.Directory> getDirectories() {
+            return directories;
+        }
+
+        /**
+         * Directories taken from the catalog without being listed
+         */
+        public int getReusedDirectories() {
+            return reusedDirectories;
+        }
+    }
+
+    /**
+     * Scan a folder tree; blocks until the walk is complete. Unreadable folders are skipped
+     */
+    public static Result scan(File root) {
+        return scan(root, null);
+    }
+
+    /**
+     * Scan a folder tree, handing found items to onBatch as the walk goes (in discovery order, not listing
+     * order). Batches are delivered one at a time, on scanner threads - keep onBatch short
+     * Blocks until the walk is complete and every batch has been delivered
+     */
+    public static Result scan(File root, Consumer<List<MediaItem>> onBatch) {
+        return scan(root, onBatch, null);
+    }
+
+    /**
+     * Revalidate a folder tree against the catalog (null for a full walk). Only items of directories that
+     * were listed are handed to onBatch - the caller already has the reused ones from the catalog
+     */
+    public static Result scan(File root, Consumer<List<MediaItem>> onBatch, MediaCatalog catalog) {
+        BatchPublisher publisher = onBatch != null ? new BatchPublisher(onBatch) : null;
+        ScheduledFuture<?> tick = publisher != null
+                ? batchTimer.scheduleAtFixedRate(publisher::flushIfDue, BATCH_INTERVAL_MS, BATCH_INTERVAL_MS,
+                        TimeUnit.MILLISECONDS)
+                : null;
+        DirectoryScan scan;
+        try {
+            scan = pool.invoke(new DirectoryScan(root.toPath(), publisher, catalog));
+        } finally {
+            if (publisher != null) {
+                tick.cancel(false);
+                publisher.flush();
+            }
+        }
+        List<MediaItem> items = new ArrayList<>();
+        Map<String, Integer> folderMediaCount = new HashMap<>();
+        Map<String, MediaCatalog.Directory> directories = new HashMap<>();
+        int reused = scan.collect(items, folderMediaCount, directories);
+        return new Result(items, folderMediaCount, directories, reused);
+    }
+
+    /**
+     * Lists one directory (or reuses its catalog record): files become items here, subdirectories are forked
+     */
+    private static final class DirectoryScan extends RecursiveTask<DirectoryScan> {
+        private static final long serialVersionUID = 1L;
+
+        // ForkJoinTask is Serializable, but scans never leave the pool - none of this state is serialized
+        private final transient Path directory;
+        private final transient BatchPublisher publisher; // Null when not streaming
+        private final transient MediaCatalog catalog; // Null for a full walk
+        // MediaItem or DirectoryScan, in listing order
+        private final transient List<Object> entries = new ArrayList<>();
+        private int mediaFiles;
+        private transient MediaCatalog.Directory record; // Null if the directory couldn't be read
+        private boolean reused;
+
+        DirectoryScan(Path directory, BatchPublisher publisher, MediaCatalog catalog) {
+            this.directory = directory;
+            this.publisher = publisher;
+            this.catalog = catalog;
+        }
+
+        @Override
+        protected DirectoryScan compute() {
+            String path = directory.toFile().getAbsolutePath();
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+            try {
+                // Taken before listing, so entries changed during the listing make the next run list it again
+                long lastModified = Files.getLastModifiedTime(directory).toMillis();
+                MediaCatalog.Directory known = catalog != null ? catalog.get(path) : null;
+                if (known != null && known.getLastModified() == lastModified) {
+                    for (MediaItem item : known.getItems()) {
+                        entries.add(item);
+                        mediaFiles++;
+                    }
+                    for (String subdirectoryPath : known.getSubdirectories()) {
+                        DirectoryScan subdirectory = new DirectoryScan(Path.of(subdirectoryPath), publisher, catalog);
+                        subdirectory.fork();
+                        subdirectories.add(subdirectory);
+                        entries.add(subdirectory);
+                    }
+                    record = known;
+                    reused = true;
+                } else {
+                    record = list(lastModified, subdirectories);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Skipping unreadable folder " + directory + ": " + e.getMessage());
+            }
+            for (DirectoryScan subdirectory : subdirectories) {
+                subdirectory.join();
+            }
+            return this;
+        }
+
+        private MediaCatalog.Directory list(long lastModified, List<DirectoryScan> subdirectories)
+                throws IOException {
+            List<String> subdirectoryPaths = new ArrayList<>();
+            List<MediaItem> items = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    BasicFileAttributes attributes = readAttributes(entry);
+                    if (attributes == null) {
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        DirectoryScan subdirectory = new DirectoryScan(entry, publisher, catalog);
+                        subdirectory.fork();
+                        subdirectories.add(subdirectory);
+                        entries.add(subdirectory);
+                        subdirectoryPaths.add(entry.toFile().getAbsolutePath());
+                    } else if (attributes.isRegularFile()) {
+                        MediaItem item = toMediaItem(entry.toFile(), attributes);
+                        if (item != null) {
+                            entries.add(item);
+                            items.add(item);
+                            mediaFiles++;
+                            if (publisher != null) {
+                                publisher.add(item);
+                            }
+                        }
+                    }
+                }
+            }
+            return new MediaCatalog.Directory(lastModified, subdirectoryPaths, items);
+        }
+
+        /**
+         * Gather results in listing order; returns the number of reused directories
+         */
+        int collect(List<MediaItem> items, Map<String, Integer> folderMediaCount,
+                Map<String, MediaCatalog.Directory> directories) {
+            int reusedCount = reused ? 1 : 0;
+            for (Object entry : entries) {
+                if (entry instanceof DirectoryScan) {
+                    reusedCount += ((DirectoryScan) entry).collect(items, folderMediaCount, directories);
+                } else {
+                    items.add((MediaItem) entry);
+                }
+            }
+            // Only track this folder if it has media files
+            String path = directory.toFile().getAbsolutePath();
+            if (mediaFiles > 0) {
+                folderMediaCount.put(path, mediaFiles);
+            }
+            if (record != null) {
+                directories.put(path, record);
+            }
+            return reusedCount;
+        }
+    }
+
+    /**
+     * Collects items from all scanner threads and delivers them in bounded batches, one at a time
+     */
+    private static final class BatchPublisher {
+        private final Consumer<List<MediaItem>> onBatch;
+        private final Object deliveryLock = new Object(); // Serializes delivery, not collection
+        private List<MediaItem> pending = new ArrayList<>(); // Guarded by this
+        private long lastFlushNanos = System.nanoTime(); // Guarded by this
+
+        BatchPublisher(Consumer<List<MediaItem>> onBatch) {
+            this.onBatch = onBatch;
+        }
+
+        void add(MediaItem item) {
+            boolean full;
+            synchronized (this) {
+                pending.add(item);
+                full = pending.size() >= BATCH_SIZE;
+            }
+            if (full) {
+                flush();
+            }
+        }
+
+        void flushIfDue() {
+            synchronized (this) {
+                if (System.nanoTime() - lastFlushNanos < TimeUnit.MILLISECONDS.toNanos(BATCH_INTERVAL_MS)) {
+                    return;
+                }
+            }
+            flush();
+        }
+
+        void flush() {
+            // Scanner threads keep adding while a batch is delivered
+            synchronized (deliveryLock) {
+                List<MediaItem> batch;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    batch = pending;
+                    pending = new ArrayList<>();
+                    lastFlushNanos = System.nanoTime();
+                }
+                try {
+                    onBatch.accept(batch);
+                } catch (RuntimeException e) {
+                    System.out.println("Scan batch handler failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Attributes of a directory entry; links to files are followed, links to directories are not (a link
+     * back up the tree would never end). Null if the entry vanished or can't be read
+     */
+    private static BasicFileAttributes readAttributes(Path entry) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (!attributes.isSymbolicLink()) {
+                return attributes;
+            }
+            BasicFileAttributes target = Files.readAttributes(entry, BasicFileAttributes.class);
+            return target.isRegularFile() ? target : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static MediaItem toMediaItem(File file, BasicFileAttributes attributes) {
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        MediaItem.MediaType type = ThumbnailGenerator.mediaTypeOf(
+                MediaTypeClassifier.classify(file, size, lastModified));
+        return type != null ? new MediaItem(file, type, size, lastModified) : null;
+    }
+}
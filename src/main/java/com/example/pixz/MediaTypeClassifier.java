@@ -0,0 +1,219 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifies a file's real format from its first bytes (magic numbers), not its name
+ * Files with a media extension are checked so misnamed or damaged ones never reach a decoder, and files
+ * without an extension (camera dumps, recovered files) are checked so they aren't missed
+ * Results are cached per path with the size and mtime they were read at; a classified file costs one map
+ * lookup, and peek answers from the cache without touching the file at all
+ */
+public class MediaTypeClassifier {
+    private static final int SNIFF_BYTES = 32;
+
+    // Extensions worth reading the header of; anything else is rejected by name without any I/O
+    private static final Set<String> MEDIA_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "jpe", "png", "gif", "bmp",
+            "mp4", "m4v", "mov", "avi", "mkv", "webm", "flv",
+            "heic", "heif", "avif", "webp", "tif", "tiff");
+    private static final Set<String> DUMP_EXTENSIONS = Set.of("", "chk", "dat", "bin", "tmp");
+
+    private static final ConcurrentHashMap<String, Classified> cache = new ConcurrentHashMap<>();
+
+    public enum Family {
+        IMAGE, VIDEO, OTHER
+    }
+
+    /**
+     * Detected container; decodable means JavaFX has a decoder for it (Image or Media)
+     */
+    public enum Kind {
+        JPEG(Family.IMAGE, true),
+        PNG(Family.IMAGE, true),
+        GIF(Family.IMAGE, true),
+        BMP(Family.IMAGE, true),
+        HEIF(Family.IMAGE, false), // HEIC / AVIF
+        WEBP(Family.IMAGE, false),
+        TIFF(Family.IMAGE, false),
+        MP4(Family.VIDEO, true),
+        QUICKTIME(Family.VIDEO, true),
+        FLV(Family.VIDEO, true),
+        MATROSKA(Family.VIDEO, false), // MKV / WebM
+        AVI(Family.VIDEO, false),
+        UNKNOWN(Family.OTHER, false);
+
+        private final Family family;
+        private final boolean decodable;
+
+        Kind(Family family, boolean decodable) {
+            this.family = family;
+            this.decodable = decodable;
+        }
+
+        public Family getFamily() {
+            return family;
+        }
+
+        public boolean isDecodable() {
+            return decodable;
+        }
+    }
+
+    private MediaTypeClassifier() {
+    }
+
+    /**
+     * Kind of a file - from the cache, the extension (non-media names) or its first bytes
+     * Reads the disk on a miss, so call from a worker thread (scans) where possible
+     */
+    public static Kind classify(File file) {
+        if (!isCandidate(file)) {
+            return Kind.UNKNOWN;
+        }
+        return classify(file, file.length(), file.lastModified());
+    }
+
+    /**
+     * Same, with size and mtime the caller already has (e.g. from a directory walk)
+     */
+    public static Kind classify(File file, long size, long lastModified) {
+        if (!isCandidate(file)) {
+            return Kind.UNKNOWN;
+        }
+        String path = file.getAbsolutePath();
+        Classified cached = cache.get(path);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.kind;
+        }
+        Kind kind = sniff(file);
+        cache.put(path, new Classified(size, lastModified, kind));
+        return kind;
+    }
+
+    /**
+     * Kind from the cache only - no header read and no stat, so safe on the FX thread; null if the path
+     * was never classified. May be stale if the file changed since, so only use it as a hint
+     */
+    public static Kind peek(File file) {
+        Classified cached = cache.get(file.getAbsolutePath());
+        return cached != null ? cached.kind : null;
+    }
+
+    private static boolean isCandidate(File file) {
+        String extension = extensionOf(file);
+        return MEDIA_EXTENSIONS.contains(extension) || DUMP_EXTENSIONS.contains(extension);
+    }
+
+    private static Kind sniff(File file) {
+        byte[] head;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(SNIFF_BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Short reads until the buffer is full or the file ends
+            }
+            head = Arrays.copyOf(buffer.array(), buffer.position());
+        } catch (IOException e) {
+            return Kind.UNKNOWN;
+        }
+        return kindOf(head);
+    }
+
+    /**
+     * Kind from the first bytes of a file
+     */
+    public static Kind kindOf(byte[] b) {
+        if (b.length < 12) {
+            return Kind.UNKNOWN;
+        }
+        if ((b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8 && (b[2] & 0xFF) == 0xFF) {
+            return Kind.JPEG;
+        }
+        if ((b[0] & 0xFF) == 0x89 && ascii(b, 1, 3).equals("PNG")) {
+            return Kind.PNG;
+        }
+        if (ascii(b, 0, 4).equals("GIF8")) {
+            return Kind.GIF;
+        }
+        if (b[0] == 'B' && b[1] == 'M' && isBmpHeaderSize(b)) {
+            return Kind.BMP;
+        }
+        if (ascii(b, 0, 4).equals("II*\0") || ascii(b, 0, 4).equals("MM\0*")) {
+            return Kind.TIFF;
+        }
+        if (ascii(b, 0, 4).equals("RIFF")) {
+            String form = ascii(b, 8, 4);
+            return form.equals("WEBP") ? Kind.WEBP : form.equals("AVI ") ? Kind.AVI : Kind.UNKNOWN;
+        }
+        if ((b[0] & 0xFF) == 0x1A && (b[1] & 0xFF) == 0x45 && (b[2] & 0xFF) == 0xDF && (b[3] & 0xFF) == 0xA3) {
+            return Kind.MATROSKA;
+        }
+        if (ascii(b, 0, 3).equals("FLV")) {
+            return Kind.FLV;
+        }
+
+        // ISO base media: size, box type; the ftyp brand tells video from HEIF stills
+        String box = ascii(b, 4, 4);
+        if (box.equals("ftyp")) {
+            String brand = ascii(b, 8, 4);
+            switch (brand) {
+                case "heic":
+                case "heix":
+                case "hevc":
+                case "mif1":
+                case "msf1":
+                case "avif":
+                    return Kind.HEIF;
+                case "qt  ":
+                    return Kind.QUICKTIME;
+                default:
+                    return Kind.MP4;
+            }
+        }
+        // QuickTime files from before ftyp start straight with their atoms
+        if (box.equals("moov") || box.equals("mdat") || box.equals("wide") || box.equals("free")) {
+            return Kind.QUICKTIME;
+        }
+        return Kind.UNKNOWN;
+    }
+
+    // DIB header sizes of the BMP versions in use - "BM" alone is too weak a signature
+    private static boolean isBmpHeaderSize(byte[] b) {
+        if (b.length < 18) {
+            return false;
+        }
+        int size = (b[14] & 0xFF) | (b[15] & 0xFF) << 8 | (b[16] & 0xFF) << 16 | (b[17] & 0xFF) << 24;
+        return size == 12 || size == 40 || size == 52 || size == 56 || size == 64 || size == 108 || size == 124;
+    }
+
+    private static String ascii(byte[] b, int offset, int length) {
+        return new String(b, offset, length, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String extensionOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static final class Classified {
+        final long size;
+        final long lastModified;
+        final Kind kind;
+
+        Classified(long size, long lastModified, Kind kind) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.pixz;
+
+import javafx.scene.image.WritableImage;
+
+/**
+ * Generated stand-in thumbnail that carries its provenance with it
+ */
+public class PlaceholderImage extends WritableImage {
+    private final ThumbnailProvenance provenance;
+
+    public PlaceholderImage(int width, int height, ThumbnailProvenance provenance) {
+        super(width, height);
+        this.provenance = provenance;
+    }
+
+    public ThumbnailProvenance getProvenance() {
+        return provenance;
+    }
+}
@@ -1,36 +1,70 @@
 package com.example.pixz;
 
-import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
 
 /**
  * Manages thumbnail caching to disk and memory for faster loads
- * Uses WeakReference for memory cache so GC can reclaim when needed
- * Tracks failed thumbnails to avoid repeated generation attempts
+ * Memory tier is a byte-budgeted LRU so recently shown thumbnails survive GC
+ * Tracks failed thumbnails (persisted, with retry backoff) to avoid repeated generation attempts
  */
 public class ThumbnailCache {
     private static final String CACHE_DIR_NAME = ".wingallery/thumbnails";
     private static Path cacheDir;
 
-    // In-memory cache with WeakReference - GC can reclaim when memory is low
-    private static final ConcurrentHashMap<String, WeakReference<Image>> memoryCache = new ConcurrentHashMap<>();
+    // Heap budget for the memory tier, overridable with -Dpixz.cache.memoryMb=<n>
+    private static final long DEFAULT_MEMORY_BUDGET_CAP = 256L * 1024 * 1024;
+    private static final String MEMORY_BUDGET_PROPERTY = "pixz.cache.memoryMb";
+
+    // In-memory LRU cache bounded by decoded size in bytes
+    private static final ThumbnailMemoryCache memoryCache = new ThumbnailMemoryCache(resolveMemoryBudget());
+
+    // Files that failed thumbnail generation - in memory only until the cache dir is available
+    private static ThumbnailFailures failures = new ThumbnailFailures(null);
+    private static ImageMetadataStore metadata = new ImageMetadataStore(null);
+
+    // Disk tier - all thumbnails live in one append-only pack (null if the cache dir is unusable)
+    private static ThumbnailPackStore packStore;
+
+    // Background persistence stage feeding the pack (null when the disk tier is unavailable)
+    private static ThumbnailWriter writer;
+
+    // Path key -> content key, so copies and moved files share one stored thumbnail
+    private static ThumbnailLinks links;
 
-    // Track files that failed thumbnail generation
-    private static final Set<String> failedThumbnails = new HashSet<>();
+    // Orphan sweep and disk budget enforcement (null when the disk tier is unavailable)
+    private static ThumbnailCacheMaintenance maintenance;
+
+    // Disk decode counters per stored format (ThumbnailCodec.Format ordinal)
+    private static final AtomicLongArray decodeCounts = new AtomicLongArray(ThumbnailCodec.Format.values().length);
+    private static final AtomicLongArray decodeNanos = new AtomicLongArray(ThumbnailCodec.Format.values().length);
+
+    // Let thumbnail generation for a fresh scan get ahead before maintenance starts
+    private static final long MAINTENANCE_DELAY_MS = 10_000;
+
+    // Decodes disk-cached thumbnails off the FX thread
+    private static final ExecutorService diskLoadExecutor = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-disk-load");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     static {
         initializeCacheDir();
@@ -44,17 +78,44 @@ public class ThumbnailCache {
             if (!Files.exists(cacheDir)) {
                 Files.createDirectories(cacheDir);
             }
+            packStore = new ThumbnailPackStore(cacheDir);
+            writer = new ThumbnailWriter(packStore, ThumbnailCodec.configuredFormat());
+            links = new ThumbnailLinks(cacheDir.resolve("links.idx"));
+            failures = new ThumbnailFailures(cacheDir.resolve("failures.idx"));
+            metadata = new ImageMetadataStore(cacheDir.resolve("metadata.idx"));
+            maintenance = new ThumbnailCacheMaintenance(packStore, links, failures, metadata,
+                    ThumbnailCache::dropStoredThumbnail);
         } catch (IOException e) {
             // Cache directory creation failed, will work without cache
+            System.out.println("Thumbnail disk cache unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Default budget is an eighth of the max heap, capped at 256MB
+     */
+    private static long resolveMemoryBudget() {
+        String configured = System.getProperty(MEMORY_BUDGET_PROPERTY);
+        if (configured != null) {
+            try {
+                return Long.parseLong(configured.trim()) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + MEMORY_BUDGET_PROPERTY + ": " + configured);
+            }
         }
+        return Math.min(Runtime.getRuntime().maxMemory() / 8, DEFAULT_MEMORY_BUDGET_CAP);
     }
 
     /**
      * Generate cache key from file path and last modified time
      */
     private static String getCacheKey(File file) {
+        return getCacheKey(file.getAbsolutePath(), file.lastModified());
+    }
+
+    private static String getCacheKey(String path, long lastModified) {
         try {
-            String key = file.getAbsolutePath() + "_" + file.lastModified();
+            String key = path + "_" + lastModified;
             MessageDigest md = MessageDigest.getInstance("MD5");
             byte[] hash = md.digest(key.getBytes());
             StringBuilder hexString = new StringBuilder();
@@ -64,125 +125,282 @@ public class ThumbnailCache {
                     hexString.append('0');
                 hexString.append(hex);
             }
-            return hexString.toString() + ".jpg";
+            return hexString.toString();
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * Key the thumbnail is stored under - the linked content key, or the path key itself
+     * for entries cached before content linking (or whose fingerprint could not be read)
+     */
+    private static String getStorageKey(File file) {
+        String pathKey = getCacheKey(file);
+        if (pathKey == null || links == null)
+            return pathKey;
+        String contentKey = links.getContentKey(pathKey);
+        return contentKey != null ? contentKey : pathKey;
+    }
+
+    private static String getStorageKey(File file, ThumbnailSize size) {
+        String baseKey = getStorageKey(file);
+        return baseKey != null ? size.keyFor(baseKey) : null;
+    }
+
     /**
      * Get cached thumbnail - checks memory cache first, then disk
      */
     public static Image getCachedThumbnail(File file) {
-        String cacheKey = getCacheKey(file);
+        return getCachedThumbnail(file, ThumbnailSize.MEDIUM);
+    }
+
+    /**
+     * Get a cached thumbnail at one pyramid level - memory first, then disk
+     */
+    public static Image getCachedThumbnail(File file, ThumbnailSize size) {
+        String cacheKey = getStorageKey(file, size);
         if (cacheKey == null)
             return null;
 
         // Check memory cache first (fastest)
-        WeakReference<Image> weakRef = memoryCache.get(cacheKey);
-        if (weakRef != null) {
-            Image image = weakRef.get();
-            if (image != null) {
-                return image; // Found in memory
-            } else {
-                // Reference was cleared by GC, remove from map
-                memoryCache.remove(cacheKey);
-            }
+        Image inMemory = memoryCache.get(cacheKey);
+        if (inMemory != null) {
+            touchStored(cacheKey);
+            return inMemory;
         }
 
-        // Check disk cache
-        Path cachedFile = cacheDir.resolve(cacheKey);
-        if (Files.exists(cachedFile)) {
-            try {
-                // Load cached thumbnail with size constraint (should already be 300x300, but
-                // enforce it)
-                Image image = new Image(cachedFile.toUri().toString(), 300, 300, false, false, true);
-
+        // Check disk cache (pack lookup is an in-memory index probe, no file open)
+        if (packStore == null)
+            return null;
+        byte[] data = packStore.get(cacheKey);
+        if (data != null) {
+            // Load cached thumbnail with size constraint (should already fit the level, but enforce it)
+            Image image = decodeStored(data, size);
+            if (image != null && !image.isError()) {
                 // Store in memory cache for next time
-                memoryCache.put(cacheKey, new WeakReference<>(image));
+                memoryCache.put(cacheKey, image);
                 return image;
-            } catch (Exception e) {
-                // Cache file corrupted, will regenerate
-                try {
-                    Files.deleteIfExists(cachedFile);
-                } catch (IOException ignored) {
-                }
+            }
+
+            // Cache record corrupted, will regenerate
+            try {
+                packStore.remove(cacheKey);
+            } catch (IOException ignored) {
             }
         }
         return null;
     }
 
     /**
-     * Check if an image is a placeholder (gray or black background)
+     * Build a thumbnail for a level from a larger level already on disk - decoding a stored thumbnail
+     * is far cheaper than decoding the original. Returns null if no larger level is stored
      */
-    public static boolean isPlaceholderImage(Image image) {
-        if (image == null || image.getWidth() == 0 || image.getHeight() == 0) {
-            return true;
+    public static Image deriveFromStored(File file, ThumbnailSize size) {
+        if (packStore == null)
+            return null;
+        String baseKey = getStorageKey(file);
+        if (baseKey == null)
+            return null;
+        for (ThumbnailSize source : ThumbnailSize.values()) {
+            if (source.getPixels() <= size.getPixels()) {
+                continue;
+            }
+            byte[] data = packStore.get(source.keyFor(baseKey));
+            if (data != null) {
+                Image image = decodeStored(data, size);
+                if (image != null && !image.isError()) {
+                    return image;
+                }
+            }
         }
+        return null;
+    }
 
-        try {
-            // Placeholder images are exactly 300x300
-            if (image.getWidth() != 300 || image.getHeight() != 300) {
-                return false; // Real images might be different sizes
+    /**
+     * Decode a stored record in whichever format it was written; null if the data is corrupt
+     */
+    private static Image decodeStored(byte[] data, ThumbnailSize size) {
+        return decodeStored(data, size.getPixels());
+    }
+
+    private static Image decodeStored(byte[] data, int maxEdge) {
+        long start = System.nanoTime();
+        ThumbnailCodec.Format format = ThumbnailCodec.formatOf(data);
+        Image image = format == ThumbnailCodec.Format.JPEG
+                ? new Image(new ByteArrayInputStream(data), maxEdge, maxEdge, true, true)
+                : ThumbnailCodec.decode(data, maxEdge);
+        decodeCounts.incrementAndGet(format.ordinal());
+        decodeNanos.addAndGet(format.ordinal(), System.nanoTime() - start);
+        return image;
+    }
+
+    /**
+     * Disk decode count and average time per stored format
+     */
+    public static String getDecodeStats() {
+        StringBuilder stats = new StringBuilder();
+        for (ThumbnailCodec.Format format : ThumbnailCodec.Format.values()) {
+            long count = decodeCounts.get(format.ordinal());
+            if (count > 0) {
+                if (stats.length() > 0)
+                    stats.append(", ");
+                stats.append(format.name().toLowerCase(Locale.ROOT)).append(": ").append(count).append(" decodes, avg ")
+                        .append(decodeNanos.get(format.ordinal()) / count / 1000).append("us");
             }
+        }
+        return stats.length() > 0 ? stats.toString() : "no disk decodes";
+    }
 
-            int centerX = (int) (image.getWidth() / 2);
-            int centerY = (int) (image.getHeight() / 2);
-            int argb = image.getPixelReader().getArgb(centerX, centerY);
+    /**
+     * Content-identity lookup for a file whose path has no thumbnail yet (new, copied or moved)
+     * Fingerprints the file, links its path to the content key and returns the shared thumbnail if one
+     * exists. Reads file samples, so call it from a worker thread, never the FX thread
+     */
+    public static Image findByContent(File file) {
+        return findByContent(file, ThumbnailSize.MEDIUM);
+    }
 
-            int red = (argb >> 16) & 0xFF;
-            int green = (argb >> 8) & 0xFF;
-            int blue = argb & 0xFF;
+    public static Image findByContent(File file, ThumbnailSize size) {
+        if (packStore == null)
+            return null;
+        String pathKey = getCacheKey(file);
+        if (pathKey == null || links.getContentKey(pathKey) != null) {
+            return null; // Already linked - the regular lookup has the answer
+        }
 
-            // Check if it's APPROXIMATELY placeholder gray (60,60,60)
-            // Allow tolerance for JPEG compression artifacts (e.g. 61, 59, 60)
-            int tolerance = 10;
-            boolean isGrayPlaceholder = (Math.abs(red - 60) <= tolerance &&
-                    Math.abs(green - 60) <= tolerance &&
-                    Math.abs(blue - 60) <= tolerance);
+        String contentKey = ContentFingerprint.compute(file);
+        if (contentKey == null)
+            return null;
 
-            if (isGrayPlaceholder) {
-                System.out.println("Identified gray placeholder: R=" + red + " G=" + green + " B=" + blue);
+        if (isStoredAtAnyLevel(contentKey) && !ContentFingerprint.isFull(contentKey)) {
+            // Another live file shares the sampled fingerprint - only a full hash can tell them apart
+            String otherPath = links.findOtherPath(contentKey, file.getAbsolutePath());
+            if (otherPath != null && new File(otherPath).isFile()) {
+                String fullHash = ContentFingerprint.computeFull(file);
+                if (fullHash == null)
+                    return null;
+                if (!fullHash.equals(ContentFingerprint.computeFull(new File(otherPath)))) {
+                    System.out.println("Fingerprint collision, using full hash for " + file.getName());
+                    contentKey = fullHash;
+                }
             }
+        }
+
+        String orphaned = links.link(pathKey, contentKey, file.getAbsolutePath(), file.lastModified());
+        if (orphaned != null) {
+            dropAllLevels(orphaned);
+        }
+        Image shared = getCachedThumbnail(file, size);
+        return shared != null ? shared : deriveFromStored(file, size);
+    }
+
+    private static boolean isStored(String storageKey) {
+        return packStore.contains(storageKey);
+    }
 
-            if (isGrayPlaceholder) {
-                System.out.println("Identified gray placeholder: R=" + red + " G=" + green + " B=" + blue);
+    private static boolean isStoredAtAnyLevel(String baseKey) {
+        for (ThumbnailSize size : ThumbnailSize.values()) {
+            if (isStored(size.keyFor(baseKey))) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            // For black, check multiple points to ensure it's uniform (not just a dark
-            // video frame)
-            if (red < 5 && green < 5 && blue < 5) {
-                // Check corners and center - if all are black, it's likely a placeholder
-                int topLeft = image.getPixelReader().getArgb(10, 10);
-                int topRight = image.getPixelReader().getArgb((int) image.getWidth() - 10, 10);
-                int bottomLeft = image.getPixelReader().getArgb(10, (int) image.getHeight() - 10);
-                int bottomRight = image.getPixelReader().getArgb((int) image.getWidth() - 10,
-                        (int) image.getHeight() - 10);
+    // Memory hits still count as use of the stored copy for disk LRU
+    private static void touchStored(String storageKey) {
+        if (packStore != null) {
+            packStore.touch(storageKey);
+        }
+    }
 
-                boolean allBlack = isBlackPixel(topLeft) && isBlackPixel(topRight) &&
-                        isBlackPixel(bottomLeft) && isBlackPixel(bottomRight);
+    private static void dropStoredThumbnail(String storageKey) {
+        memoryCache.remove(storageKey);
+        writer.cancel(storageKey);
+        try {
+            packStore.remove(storageKey);
+        } catch (IOException ignored) {
+        }
+    }
 
-                return allBlack;
-            }
+    private static void dropAllLevels(String baseKey) {
+        for (ThumbnailSize size : ThumbnailSize.values()) {
+            dropStoredThumbnail(size.keyFor(baseKey));
+        }
+        dropStoredThumbnail(ThumbnailSize.stripKeyFor(baseKey));
+    }
 
-            return isGrayPlaceholder;
-        } catch (Exception e) {
-            return false;
+    /**
+     * Memory tier only - never touches the disk, safe to call on the FX thread
+     */
+    public static Image getMemoryCachedThumbnail(File file) {
+        return getMemoryCachedThumbnail(file, ThumbnailSize.MEDIUM);
+    }
+
+    public static Image getMemoryCachedThumbnail(File file, ThumbnailSize size) {
+        String cacheKey = getStorageKey(file, size);
+        if (cacheKey == null)
+            return null;
+        Image inMemory = memoryCache.get(cacheKey);
+        if (inMemory != null) {
+            touchStored(cacheKey);
         }
+        return inMemory;
+    }
+
+    /**
+     * Whether a finished thumbnail exists on disk (index probe only)
+     */
+    public static boolean hasCachedThumbnail(File file) {
+        return hasCachedThumbnail(file, ThumbnailSize.MEDIUM);
+    }
+
+    public static boolean hasCachedThumbnail(File file, ThumbnailSize size) {
+        if (packStore == null)
+            return false;
+        String cacheKey = getStorageKey(file, size);
+        return cacheKey != null && isStored(cacheKey);
     }
 
-    private static boolean isBlackPixel(int argb) {
-        int red = (argb >> 16) & 0xFF;
-        int green = (argb >> 8) & 0xFF;
-        int blue = argb & 0xFF;
-        return red < 5 && green < 5 && blue < 5;
+    /**
+     * Whether any pyramid level is on disk (a missing level can then be derived instead of decoded)
+     */
+    public static boolean hasCachedThumbnailAtAnyLevel(File file) {
+        if (packStore == null)
+            return false;
+        String baseKey = getStorageKey(file);
+        return baseKey != null && isStoredAtAnyLevel(baseKey);
+    }
+
+    /**
+     * Read and decode a disk-cached thumbnail on a background thread
+     */
+    public static CompletableFuture<Image> loadCachedThumbnailAsync(File file) {
+        return loadCachedThumbnailAsync(file, ThumbnailSize.MEDIUM);
+    }
+
+    public static CompletableFuture<Image> loadCachedThumbnailAsync(File file, ThumbnailSize size) {
+        return CompletableFuture.supplyAsync(() -> getCachedThumbnail(file, size), diskLoadExecutor);
+    }
+
+    /**
+     * Check if an image is a placeholder - reads its recorded provenance, never its pixels
+     * (a genuinely dark video frame is a real thumbnail)
+     */
+    public static boolean isPlaceholderImage(Image image) {
+        return ThumbnailProvenance.of(image).isPlaceholder();
     }
 
     /**
-     * Save thumbnail to cache (both memory and disk)
+     * Save thumbnail to cache (memory now, disk via the background writer)
      * Don't cache placeholders
      */
     public static void cacheThumbnail(File file, Image thumbnail) {
+        cacheThumbnail(file, thumbnail, ThumbnailSize.MEDIUM);
+    }
+
+    public static void cacheThumbnail(File file, Image thumbnail, ThumbnailSize size) {
         if (thumbnail == null)
             return;
 
@@ -191,40 +409,93 @@ public class ThumbnailCache {
             return; // Skip caching placeholders
         }
 
-        String cacheKey = getCacheKey(file);
+        String cacheKey = getStorageKey(file, size);
         if (cacheKey == null)
             return;
 
-        // Store in memory cache with WeakReference
-        memoryCache.put(cacheKey, new WeakReference<>(thumbnail));
+        // Store in memory cache (LRU, evicts by byte budget)
+        memoryCache.put(cacheKey, thumbnail);
 
-        // Store on disk for persistence
-        Path cachedFile = cacheDir.resolve(cacheKey);
+        // Queue for disk persistence - encoding and writing happen on the writer thread
+        // Skipped when the content is already stored (e.g. shared with a copy of this file)
+        if (writer != null && !isStored(cacheKey)) {
+            writer.submit(cacheKey, thumbnail);
+        }
+    }
 
-        try {
-            // Convert JavaFX Image to BufferedImage
-            int width = (int) thumbnail.getWidth();
-            int height = (int) thumbnail.getHeight();
-            // Use TYPE_INT_RGB for JPEG (no alpha channel needed for thumbnails)
-            BufferedImage bImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-            PixelReader pixelReader = thumbnail.getPixelReader();
-            for (int y = 0; y < height; y++) {
-                for (int x = 0; x < width; x++) {
-                    int argb = pixelReader.getArgb(x, y);
-                    // Remove alpha channel for JPEG
-                    int rgb = argb & 0x00FFFFFF;
-                    bImage.setRGB(x, y, rgb);
-                }
-            }
+    /**
+     * Scrub strip of a video from the memory tier only - safe to call on the FX thread
+     */
+    public static Image getMemoryCachedScrubStrip(File file) {
+        String baseKey = getStorageKey(file);
+        return baseKey != null ? memoryCache.get(ThumbnailSize.stripKeyFor(baseKey)) : null;
+    }
 
-            // Save as JPEG with high quality (0.85 = 85% quality, good balance)
-            ImageIO.write(bImage, "jpg", cachedFile.toFile());
+    /**
+     * Scrub strip of a video - memory first, then disk; null if none was generated yet
+     * Reads the disk, so only call from a worker thread
+     */
+    public static Image getCachedScrubStrip(File file, int maxEdge) {
+        String baseKey = getStorageKey(file);
+        if (baseKey == null)
+            return null;
+        String stripKey = ThumbnailSize.stripKeyFor(baseKey);
+        Image inMemory = memoryCache.get(stripKey);
+        if (inMemory != null) {
+            touchStored(stripKey);
+            return inMemory;
+        }
+        if (packStore == null)
+            return null;
+        byte[] data = packStore.get(stripKey);
+        if (data == null)
+            return null;
+        Image image = decodeStored(data, maxEdge);
+        if (image == null || image.isError()) {
+            dropStoredThumbnail(stripKey);
+            return null;
+        }
+        memoryCache.put(stripKey, image);
+        return image;
+    }
 
-            // Flush BufferedImage to release native resources
-            bImage.flush();
-        } catch (Exception e) {
-            // Failed to cache, not critical
+    /**
+     * Whether a scrub strip is on disk (index probe only)
+     */
+    public static boolean hasCachedScrubStrip(File file) {
+        if (packStore == null)
+            return false;
+        String baseKey = getStorageKey(file);
+        return baseKey != null && isStored(ThumbnailSize.stripKeyFor(baseKey));
+    }
+
+    /**
+     * Read and decode a stored scrub strip on a background thread (no video decoding)
+     */
+    public static CompletableFuture<Image> loadCachedScrubStripAsync(File file, int maxEdge) {
+        return CompletableFuture.supplyAsync(() -> getCachedScrubStrip(file, maxEdge), diskLoadExecutor);
+    }
+
+    /**
+     * Save a scrub strip (memory now, disk via the background writer)
+     */
+    public static void cacheScrubStrip(File file, Image strip) {
+        String baseKey = getStorageKey(file);
+        if (strip == null || baseKey == null)
+            return;
+        String stripKey = ThumbnailSize.stripKeyFor(baseKey);
+        memoryCache.put(stripKey, strip);
+        if (writer != null && !isStored(stripKey)) {
+            writer.submit(stripKey, strip);
+        }
+    }
+
+    /**
+     * Backpressure for thumbnail producers - blocks while the disk writer is behind
+     */
+    public static void awaitWriteCapacity() throws InterruptedException {
+        if (writer != null) {
+            writer.awaitCapacity();
         }
     }
 
@@ -235,85 +506,180 @@ public class ThumbnailCache {
         memoryCache.clear();
     }
 
+    /**
+     * Memory tier hit/miss/eviction counters
+     */
+    public static String getMemoryCacheStats() {
+        return memoryCache.getStats();
+    }
+
     /**
      * Remove cached thumbnail for a specific file (both memory and disk)
      */
     public static void removeCachedThumbnail(File file) {
-        String cacheKey = getCacheKey(file);
-        if (cacheKey == null)
+        removeCachedThumbnail(file, file.lastModified());
+    }
+
+    /**
+     * Remove the cached thumbnail of one version of a file - the mtime it had when cached, so this works
+     * after the file was edited or deleted (the folder watcher knows the old mtime from the scan)
+     */
+    public static void removeCachedThumbnail(File file, long lastModified) {
+        String pathKey = getCacheKey(file.getAbsolutePath(), lastModified);
+        if (pathKey == null)
             return;
 
-        // Remove from memory cache
-        memoryCache.remove(cacheKey);
+        // Unlink the path; the stored thumbnail goes only when no other copy still references it
+        String contentKey = links != null ? links.getContentKey(pathKey) : null;
+        String cacheKey = contentKey != null ? contentKey : pathKey;
+        String orphaned = links != null ? links.unlink(pathKey) : null;
+        if (orphaned == null && !cacheKey.equals(pathKey)) {
+            System.out.println("Unlinked cached thumbnail for " + file.getName() + " (shared content kept)");
+            return;
+        }
 
-        // Remove from disk cache
-        Path cachedFile = cacheDir.resolve(cacheKey);
-        try {
-            boolean deleted = Files.deleteIfExists(cachedFile);
-            System.out.println(
-                    "Removing cached thumbnail for " + file.getName() + ": " + (deleted ? "DELETED" : "NOT FOUND"));
-        } catch (IOException ignored) {
-            System.out.println("Error removing cached thumbnail for " + file.getName());
+        // Remove every level (and the scrub strip) from memory and disk, including pending writes
+        boolean deleted = false;
+        List<String> storedKeys = new ArrayList<>();
+        for (ThumbnailSize size : ThumbnailSize.values()) {
+            storedKeys.add(size.keyFor(cacheKey));
+        }
+        storedKeys.add(ThumbnailSize.stripKeyFor(cacheKey));
+        for (String levelKey : storedKeys) {
+            memoryCache.remove(levelKey);
+            if (packStore == null)
+                continue;
+            writer.cancel(levelKey);
+            try {
+                deleted |= packStore.remove(levelKey);
+            } catch (IOException ignored) {
+                System.out.println("Error removing cached thumbnail for " + file.getName());
+            }
         }
+        System.out.println(
+                "Removing cached thumbnail for " + file.getName() + ": " + (deleted ? "DELETED" : "NOT FOUND"));
     }
 
     /**
-     * Mark a file as having failed thumbnail generation
+     * Dimensions, orientation and capture time of an image - from the metadata cache, otherwise read from
+     * the file's header (no pixels decoded) and cached
+     * Reads the disk on a miss, so only call from a worker thread
      */
-    public static void markAsFailed(File file) {
-        failedThumbnails.add(file.getAbsolutePath());
+    public static ImageMetadata getImageMetadata(File file) {
+        String key = getCacheKey(file);
+        ImageMetadata cached = key != null ? metadata.get(key) : null;
+        if (cached != null) {
+            return cached;
+        }
+        ImageMetadata read = ImageMetadata.read(file);
+        if (key != null) {
+            metadata.put(key, file.getAbsolutePath(), file.lastModified(), read);
+        }
+        return read;
     }
 
     /**
-     * Check if a file has failed thumbnail generation
+     * Record a failed generation attempt; the file is skipped until its backoff expires
+     */
+    public static void markAsFailed(File file, ThumbnailFailures.Cause cause) {
+        String key = getCacheKey(file);
+        if (key == null)
+            return;
+        ThumbnailFailures.Failure failure = failures.recordFailure(key, file.getAbsolutePath(), file.lastModified(),
+                cause, System.currentTimeMillis());
+        System.out.println("Thumbnail failed for " + file.getName() + " (" + cause + ", attempt "
+                + failure.getAttempts() + "), next retry in "
+                + (failure.getNextRetryMillis() - failure.getLastAttemptMillis()) / 60_000 + " min");
+    }
+
+    /**
+     * Check if a file failed recently and its retry is not due yet (generation should be skipped)
      */
     public static boolean hasFailed(File file) {
-        return failedThumbnails.contains(file.getAbsolutePath());
+        String key = getCacheKey(file);
+        return key != null && failures.isBackedOff(key, System.currentTimeMillis());
+    }
+
+    /**
+     * Check if a file has a failure record whose backoff has expired
+     */
+    public static boolean isRetryDue(File file) {
+        String key = getCacheKey(file);
+        return key != null && failures.get(key) != null
+                && !failures.isBackedOff(key, System.currentTimeMillis());
     }
 
     /**
      * Remove a file from the failed list (after successful generation)
      */
     public static void removeFromFailed(File file) {
-        failedThumbnails.remove(file.getAbsolutePath());
+        String key = getCacheKey(file);
+        if (key != null) {
+            failures.clear(key);
+        }
     }
 
     /**
      * Get all failed thumbnail file paths
      */
     public static Set<String> getFailedThumbnails() {
-        return new HashSet<>(failedThumbnails);
+        Set<String> paths = new HashSet<>();
+        for (ThumbnailFailures.Failure failure : failures.snapshot()) {
+            paths.add(failure.getPath());
+        }
+        return paths;
     }
 
     /**
      * Clear the failed thumbnails list
      */
     public static void clearFailedList() {
-        failedThumbnails.clear();
+        failures.clearAll();
     }
 
     /**
      * Clear old cache entries (optional cleanup)
      */
     public static void clearOldCache(int daysOld) {
+        if (packStore == null)
+            return;
         try {
             long cutoffTime = System.currentTimeMillis() - (daysOld * 24L * 60 * 60 * 1000);
-            Files.list(cacheDir)
-                    .filter(path -> {
-                        try {
-                            return Files.getLastModifiedTime(path).toMillis() < cutoffTime;
-                        } catch (IOException e) {
-                            return false;
-                        }
-                    })
-                    .forEach(path -> {
-                        try {
-                            Files.deleteIfExists(path);
-                        } catch (IOException ignored) {
-                        }
-                    });
+            packStore.removeOlderThan(cutoffTime);
         } catch (IOException e) {
             // Cleanup failed, not critical
         }
     }
+
+    /**
+     * Sweep thumbnails of files no longer in the library and enforce the disk budget in the background
+     * Call once a scan has finished so the library is complete
+     */
+    public static void scheduleMaintenance(Collection<String> libraryPaths, Collection<String> libraryRoots) {
+        if (maintenance != null) {
+            maintenance.scheduleSweep(libraryPaths, libraryRoots, MAINTENANCE_DELAY_MS);
+        }
+    }
+
+    /**
+     * Flush and close the disk tier (call on app exit)
+     */
+    public static void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdown();
+        }
+        if (writer != null) {
+            writer.shutdown(5000);
+            System.out.println("Thumbnail writer: " + writer.getStats());
+            System.out.println("Thumbnail disk decodes: " + getDecodeStats());
+        }
+        if (links != null) {
+            links.save();
+        }
+        failures.save();
+        metadata.save();
+        if (packStore != null) {
+            packStore.close();
+        }
+    }
 }
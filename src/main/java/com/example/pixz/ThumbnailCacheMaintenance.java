@@ -0,0 +1,254 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Background upkeep for the disk cache
+ * 1. Orphan sweep - unlinks paths whose file is gone, was edited (mtime changed) or has disappeared from a
+ *    library folder, then drops stored thumbnails nothing references any more (and stale failure and
+ *    metadata records)
+ * 2. Disk budget - evicts least recently accessed thumbnails until the pack fits the budget
+ * 3. Compaction - rewrites the pack once removals and replaced thumbnails left enough dead space (after a
+ *    sweep, and periodically for the dead space everyday invalidations leave behind)
+ *
+ * Work runs on one low-priority thread in small slices with pauses in between, and every removal takes
+ * the pack lock only briefly, so lookups are never blocked for long. Compaction copies without the lock
+ * and holds it only to carry over what changed meanwhile and switch segments
+ */
+public class ThumbnailCacheMaintenance {
+    private static final String DISK_BUDGET_PROPERTY = "pixz.cache.diskMb";
+    private static final long DEFAULT_DISK_BUDGET = 1024L * 1024 * 1024;
+
+    // Entries examined per slice, and the pause between slices
+    private static final int SLICE_SIZE = 500;
+    private static final long SLICE_PAUSE_MS = 50;
+
+    // How often the pack's dead space is checked outside of sweeps
+    private static final long COMPACTION_CHECK_MS = 5 * 60_000;
+
+    // Content keys are a one-letter prefix plus 32 hex digits; bare path keys (pre-linking) are 32
+    private static final int CONTENT_KEY_LENGTH = 33;
+
+    private final ThumbnailPackStore packStore;
+    private final ThumbnailLinks links;
+    private final ThumbnailFailures failures;
+    private final ImageMetadataStore metadata;
+    private final Consumer<String> dropStored;
+    private final long budgetBytes;
+    private final AtomicBoolean sweepQueued = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-maintenance");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private volatile boolean running = true;
+
+    /**
+     * @param dropStored removes one stored thumbnail level from every tier (memory, pending writes, pack)
+     */
+    public ThumbnailCacheMaintenance(ThumbnailPackStore packStore, ThumbnailLinks links,
+            ThumbnailFailures failures, ImageMetadataStore metadata, Consumer<String> dropStored) {
+        this.packStore = packStore;
+        this.links = links;
+        this.failures = failures;
+        this.metadata = metadata;
+        this.dropStored = dropStored;
+        this.budgetBytes = resolveDiskBudget();
+        executor.scheduleWithFixedDelay(() -> compactPack(packStore), COMPACTION_CHECK_MS, COMPACTION_CHECK_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queue a sweep against the current library (ignored if one is already queued or running)
+     *
+     * @param libraryPaths absolute paths of every media file currently loaded
+     * @param libraryRoots folders the library was scanned from - only paths under these are checked
+     *                     against libraryPaths, everything else is kept until the disk budget evicts it
+     */
+    public void scheduleSweep(Collection<String> libraryPaths, Collection<String> libraryRoots, long delayMillis) {
+        if (!running || !sweepQueued.compareAndSet(false, true)) {
+            return;
+        }
+        Set<String> paths = new HashSet<>(libraryPaths);
+        List<String> roots = new ArrayList<>();
+        for (String root : libraryRoots) {
+            roots.add(root.endsWith(File.separator) ? root : root + File.separator);
+        }
+        executor.schedule(() -> {
+            try {
+                sweepOrphans(paths, roots);
+                enforceBudget();
+                compactPack(packStore);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                System.out.println("Thumbnail cache maintenance failed: " + e.getMessage());
+            } finally {
+                sweepQueued.set(false);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void shutdown() {
+        running = false;
+        executor.shutdownNow();
+    }
+
+    private void sweepOrphans(Set<String> libraryPaths, List<String> roots) throws InterruptedException {
+        int unlinked = 0;
+        int dropped = 0;
+        int examined = 0;
+
+        for (Map.Entry<String, ThumbnailLinks.Link> entry : links.snapshot()) {
+            checkpoint(++examined);
+            ThumbnailLinks.Link link = entry.getValue();
+            if (!isOrphan(link, libraryPaths, roots)) {
+                continue;
+            }
+            unlinked++;
+            String orphanedContent = links.unlink(entry.getKey());
+            if (orphanedContent != null) {
+                for (ThumbnailSize size : ThumbnailSize.values()) {
+                    dropStored.accept(size.keyFor(orphanedContent));
+                }
+                dropStored.accept(ThumbnailSize.stripKeyFor(orphanedContent));
+                dropped++;
+            }
+        }
+
+        // Content stored but referenced by no path at all (e.g. links lost in a crash)
+        List<String> unreferenced = new ArrayList<>();
+        for (Map.Entry<String, ThumbnailIndex.Entry> entry : packStore.snapshotEntries()) {
+            checkpoint(++examined);
+            String key = entry.getKey();
+            String baseKey = ThumbnailSize.baseKey(key);
+            if (baseKey.length() == CONTENT_KEY_LENGTH && links.getReferenceCount(baseKey) == 0) {
+                unreferenced.add(key);
+            }
+        }
+        for (String key : unreferenced) {
+            dropStored.accept(key);
+            dropped++;
+        }
+
+        // Failure and metadata records of deleted or edited files would never be consulted again
+        int staleFailures = failures.removeStale();
+        int staleMetadata = metadata.removeStale();
+
+        if (unlinked > 0 || dropped > 0 || staleFailures > 0 || staleMetadata > 0) {
+            System.out.println("Thumbnail sweep: unlinked " + unlinked + " stale paths, dropped " + dropped
+                    + " thumbnails, " + staleFailures + " stale failure records and " + staleMetadata
+                    + " stale metadata records");
+        }
+    }
+
+    private boolean isOrphan(ThumbnailLinks.Link link, Set<String> libraryPaths, List<String> roots) {
+        String path = link.getPath();
+        for (String root : roots) {
+            if (path.startsWith(root)) {
+                if (!libraryPaths.contains(path)) {
+                    return true;
+                }
+                break;
+            }
+        }
+        File file = new File(path);
+        return file.lastModified() != link.getLastModified(); // 0 when the file no longer exists
+    }
+
+    /**
+     * Evict least recently accessed thumbnails until live data fits the budget
+     */
+    private void enforceBudget() throws InterruptedException {
+        long liveBytes = packStore.getLiveBytes();
+        if (liveBytes <= budgetBytes) {
+            return;
+        }
+
+        List<Map.Entry<String, ThumbnailIndex.Entry>> entries = packStore.snapshotEntries();
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().getLastAccessMillis()));
+
+        long toFree = liveBytes - budgetBytes;
+        long freed = 0;
+        int evicted = 0;
+        List<String> slice = new ArrayList<>(SLICE_SIZE);
+        for (Map.Entry<String, ThumbnailIndex.Entry> entry : entries) {
+            if (freed >= toFree) {
+                break;
+            }
+            slice.add(entry.getKey());
+            freed += entry.getValue().getRecordLength();
+            if (slice.size() == SLICE_SIZE) {
+                evicted += evict(slice);
+                checkpoint(SLICE_SIZE);
+            }
+        }
+        evicted += evict(slice);
+        System.out.println("Thumbnail cache over budget: evicted " + evicted + " thumbnails (" + freed / 1024
+                + "KB)");
+    }
+
+    /**
+     * Mutations only leave dead space behind - reclaiming it happens here, off their path
+     */
+    private static void compactPack(ThumbnailPackStore packStore) {
+        try {
+            packStore.compactIfNeeded();
+        } catch (Exception e) {
+            // The old segment stays current; checked again later
+            System.out.println("Thumbnail pack compaction failed: " + e.getMessage());
+        }
+    }
+
+    private int evict(List<String> keys) {
+        int evicted = keys.size();
+        for (String key : keys) {
+            dropStored.accept(key);
+        }
+        keys.clear();
+        return evicted;
+    }
+
+    /**
+     * Yield between slices so maintenance never competes with foreground work for long
+     */
+    private void checkpoint(int examined) throws InterruptedException {
+        if (!running) {
+            throw new InterruptedException("Maintenance stopped");
+        }
+        if (examined % SLICE_SIZE == 0) {
+            Thread.sleep(SLICE_PAUSE_MS);
+        }
+    }
+
+    private static long resolveDiskBudget() {
+        String configured = System.getProperty(DISK_BUDGET_PROPERTY);
+        if (configured != null) {
+            try {
+                return Long.parseLong(configured.trim()) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + DISK_BUDGET_PROPERTY + ": " + configured);
+            }
+        }
+        return DEFAULT_DISK_BUDGET;
+    }
+
+}
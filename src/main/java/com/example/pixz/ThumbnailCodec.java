@@ -0,0 +1,339 @@
+package com.example.pixz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Fast-decode storage formats for thumbnails, both holding pre-scaled premultiplied pixels
+ * RAW - uncompressed BGRA, the layout JavaFX textures use; decoding just wraps the bytes in a PixelBuffer
+ * QOI - premultiplied ARGB lightly compressed with the QOI scheme (index / diff / luma / run ops over a
+ *       64-entry colour cache); one pass over the bytes into an int[] that backs a PixelBuffer
+ * Neither needs JPEG entropy decoding, IDCT or colour conversion
+ *
+ * Layout: magic ("PXR1" raw, "PXQ1" qoi), width (int), height (int), payload. JPEG data starts with
+ * 0xFFD8, so all formats can be told apart from the first bytes and coexist in one pack
+ */
+public final class ThumbnailCodec {
+    private static final String FORMAT_PROPERTY = "pixz.thumbnail.format";
+
+    private static final int RAW_MAGIC = 0x50585231; // "PXR1"
+    private static final int QOI_MAGIC = 0x50585131; // "PXQ1"
+    private static final int HEADER_BYTES = 12;
+
+    // Refuse headers claiming more pixels than any thumbnail level can have
+    private static final int MAX_PIXELS = 1024 * 1024;
+
+    private static final int OP_INDEX = 0x00;
+    private static final int OP_DIFF = 0x40;
+    private static final int OP_LUMA = 0x80;
+    private static final int OP_RUN = 0xC0;
+    private static final int OP_RGB = 0xFE;
+    private static final int OP_RGBA = 0xFF;
+    private static final int MAX_RUN = 62;
+
+    /**
+     * How the writer encodes new thumbnails (existing records are read whatever their format)
+     */
+    public enum Format {
+        JPEG, // ~20-30KB per 300px thumbnail, slowest to decode
+        QOI, // roughly 1-2 bytes per pixel
+        RAW // 4 bytes per pixel, fastest to decode
+    }
+
+    private ThumbnailCodec() {
+    }
+
+    /**
+     * Format chosen with -Dpixz.thumbnail.format=jpeg|qoi|raw (default jpeg - smallest on disk)
+     */
+    public static Format configuredFormat() {
+        String configured = System.getProperty(FORMAT_PROPERTY);
+        if (configured == null || configured.isBlank()) {
+            return Format.JPEG;
+        }
+        try {
+            return Format.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring invalid " + FORMAT_PROPERTY + ": " + configured);
+            return Format.JPEG;
+        }
+    }
+
+    /**
+     * Format of stored thumbnail data
+     */
+    public static Format formatOf(byte[] data) {
+        if (data.length >= HEADER_BYTES) {
+            int magic = readInt(data, 0);
+            if (magic == RAW_MAGIC) {
+                return Format.RAW;
+            } else if (magic == QOI_MAGIC) {
+                return Format.QOI;
+            }
+        }
+        return Format.JPEG;
+    }
+
+    /**
+     * Encode a thumbnail as RAW or QOI, or null if its pixels are not readable
+     */
+    public static byte[] encode(Image image, Format format) {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        PixelReader pixelReader = image.getPixelReader();
+        if (width <= 0 || height <= 0 || pixelReader == null) {
+            return null;
+        }
+        if (format == Format.RAW) {
+            byte[] out = new byte[HEADER_BYTES + width * height * 4];
+            writeHeader(out, RAW_MAGIC, width, height);
+            pixelReader.getPixels(0, 0, width, height, PixelFormat.getByteBgraPreInstance(), out, HEADER_BYTES,
+                    width * 4);
+            return out;
+        }
+        int[] pixels = new int[width * height];
+        pixelReader.getPixels(0, 0, width, height, PixelFormat.getIntArgbPreInstance(), pixels, 0, width);
+        return encodeQoi(pixels, width, height);
+    }
+
+    static byte[] encodeQoi(int[] pixels, int width, int height) {
+        // Worst case every pixel is a 5-byte RGBA op
+        byte[] out = new byte[HEADER_BYTES + pixels.length * 5];
+        writeHeader(out, QOI_MAGIC, width, height);
+        int pos = HEADER_BYTES;
+
+        int[] index = new int[64];
+        int previous = 0xFF000000;
+        int run = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            if (pixel == previous) {
+                run++;
+                if (run == MAX_RUN || i == pixels.length - 1) {
+                    out[pos++] = (byte) (OP_RUN | (run - 1));
+                    run = 0;
+                }
+                continue;
+            }
+            if (run > 0) {
+                out[pos++] = (byte) (OP_RUN | (run - 1));
+                run = 0;
+            }
+
+            int hash = hash(pixel);
+            if (index[hash] == pixel) {
+                out[pos++] = (byte) (OP_INDEX | hash);
+            } else {
+                index[hash] = pixel;
+                if ((pixel >>> 24) == (previous >>> 24)) {
+                    int dr = (byte) ((pixel >> 16) - (previous >> 16));
+                    int dg = (byte) ((pixel >> 8) - (previous >> 8));
+                    int db = (byte) (pixel - previous);
+                    int drDg = dr - dg;
+                    int dbDg = db - dg;
+                    if (dr >= -2 && dr <= 1 && dg >= -2 && dg <= 1 && db >= -2 && db <= 1) {
+                        out[pos++] = (byte) (OP_DIFF | (dr + 2) << 4 | (dg + 2) << 2 | (db + 2));
+                    } else if (dg >= -32 && dg <= 31 && drDg >= -8 && drDg <= 7 && dbDg >= -8 && dbDg <= 7) {
+                        out[pos++] = (byte) (OP_LUMA | (dg + 32));
+                        out[pos++] = (byte) ((drDg + 8) << 4 | (dbDg + 8));
+                    } else {
+                        out[pos++] = (byte) OP_RGB;
+                        out[pos++] = (byte) (pixel >> 16);
+                        out[pos++] = (byte) (pixel >> 8);
+                        out[pos++] = (byte) pixel;
+                    }
+                } else {
+                    out[pos++] = (byte) OP_RGBA;
+                    out[pos++] = (byte) (pixel >> 16);
+                    out[pos++] = (byte) (pixel >> 8);
+                    out[pos++] = (byte) pixel;
+                    out[pos++] = (byte) (pixel >>> 24);
+                }
+            }
+            previous = pixel;
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    /**
+     * Decode RAW or QOI data into an image whose longest edge is at most maxEdge (box-filtered down if
+     * stored larger). Returns null if the data is truncated or corrupt
+     */
+    public static Image decode(byte[] data, int maxEdge) {
+        Format format = formatOf(data);
+        if (format == Format.JPEG) {
+            return null;
+        }
+        int width = readInt(data, 4);
+        int height = readInt(data, 8);
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_PIXELS) {
+            return null;
+        }
+        int count = width * height;
+        boolean scaleDown = Math.max(width, height) > maxEdge;
+
+        if (format == Format.RAW) {
+            if (data.length != HEADER_BYTES + count * 4) {
+                return null;
+            }
+            if (!scaleDown) {
+                // Zero copy - the texture upload reads straight from the stored bytes
+                ByteBuffer bgra = ByteBuffer.wrap(data, HEADER_BYTES, count * 4).slice();
+                return new WritableImage(new PixelBuffer<>(width, height, bgra, PixelFormat.getByteBgraPreInstance()));
+            }
+            int[] pixels = new int[count];
+            ByteBuffer.wrap(data, HEADER_BYTES, count * 4).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+                    .get(pixels);
+            return scaledImage(pixels, width, height, maxEdge);
+        }
+
+        int[] pixels = decodeQoi(data, count);
+        if (pixels == null) {
+            return null;
+        }
+        if (scaleDown) {
+            return scaledImage(pixels, width, height, maxEdge);
+        }
+        return intImage(pixels, width, height);
+    }
+
+    static int[] decodeQoi(byte[] data, int count) {
+        int[] pixels = new int[count];
+        int[] index = new int[64];
+        int a = 0xFF, r = 0, g = 0, b = 0;
+        int pos = HEADER_BYTES;
+        int i = 0;
+        try {
+            while (i < count) {
+                int op = data[pos++] & 0xFF;
+                switch (op >> 6) {
+                    case 0: { // OP_INDEX
+                        int pixel = index[op];
+                        a = pixel >>> 24;
+                        r = (pixel >> 16) & 0xFF;
+                        g = (pixel >> 8) & 0xFF;
+                        b = pixel & 0xFF;
+                        pixels[i++] = pixel;
+                        continue;
+                    }
+                    case 1: // OP_DIFF
+                        r = (r + ((op >> 4) & 3) - 2) & 0xFF;
+                        g = (g + ((op >> 2) & 3) - 2) & 0xFF;
+                        b = (b + (op & 3) - 2) & 0xFF;
+                        break;
+                    case 2: { // OP_LUMA
+                        int dg = (op & 0x3F) - 32;
+                        int next = data[pos++] & 0xFF;
+                        r = (r + dg + (next >> 4) - 8) & 0xFF;
+                        g = (g + dg) & 0xFF;
+                        b = (b + dg + (next & 0x0F) - 8) & 0xFF;
+                        break;
+                    }
+                    default:
+                        if (op == OP_RGB) {
+                            r = data[pos] & 0xFF;
+                            g = data[pos + 1] & 0xFF;
+                            b = data[pos + 2] & 0xFF;
+                            pos += 3;
+                        } else if (op == OP_RGBA) {
+                            r = data[pos] & 0xFF;
+                            g = data[pos + 1] & 0xFF;
+                            b = data[pos + 2] & 0xFF;
+                            a = data[pos + 3] & 0xFF;
+                            pos += 4;
+                        } else { // OP_RUN
+                            int run = (op & 0x3F) + 1;
+                            if (i + run > count) {
+                                return null;
+                            }
+                            Arrays.fill(pixels, i, i + run, a << 24 | r << 16 | g << 8 | b);
+                            i += run;
+                            continue;
+                        }
+                }
+                int pixel = a << 24 | r << 16 | g << 8 | b;
+                index[(r * 3 + g * 5 + b * 7 + a * 11) & 63] = pixel;
+                pixels[i++] = pixel;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return null; // Truncated record
+        }
+        return pixels;
+    }
+
+    private static Image scaledImage(int[] pixels, int width, int height, int maxEdge) {
+        double scale = (double) maxEdge / Math.max(width, height);
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        return intImage(downscale(pixels, width, height, targetWidth, targetHeight), targetWidth, targetHeight);
+    }
+
+    private static Image intImage(int[] pixels, int width, int height) {
+        return new WritableImage(new PixelBuffer<>(width, height, IntBuffer.wrap(pixels),
+                PixelFormat.getIntArgbPreInstance()));
+    }
+
+    /**
+     * Area-average downscale - premultiplied pixels can be averaged channel by channel
+     */
+    private static int[] downscale(int[] source, int width, int height, int targetWidth, int targetHeight) {
+        int[] target = new int[targetWidth * targetHeight];
+        for (int ty = 0; ty < targetHeight; ty++) {
+            int y0 = ty * height / targetHeight;
+            int y1 = Math.max(y0 + 1, (ty + 1) * height / targetHeight);
+            for (int tx = 0; tx < targetWidth; tx++) {
+                int x0 = tx * width / targetWidth;
+                int x1 = Math.max(x0 + 1, (tx + 1) * width / targetWidth);
+                int a = 0, r = 0, g = 0, b = 0;
+                for (int y = y0; y < y1; y++) {
+                    int row = y * width;
+                    for (int x = x0; x < x1; x++) {
+                        int pixel = source[row + x];
+                        a += pixel >>> 24;
+                        r += (pixel >> 16) & 0xFF;
+                        g += (pixel >> 8) & 0xFF;
+                        b += pixel & 0xFF;
+                    }
+                }
+                int area = (y1 - y0) * (x1 - x0);
+                target[ty * targetWidth + tx] = (a / area) << 24 | (r / area) << 16 | (g / area) << 8 | (b / area);
+            }
+        }
+        return target;
+    }
+
+    private static int hash(int pixel) {
+        int a = pixel >>> 24;
+        int r = (pixel >> 16) & 0xFF;
+        int g = (pixel >> 8) & 0xFF;
+        int b = pixel & 0xFF;
+        return (r * 3 + g * 5 + b * 7 + a * 11) & 63;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8
+                | (data[offset + 3] & 0xFF);
+    }
+
+    private static void writeHeader(byte[] data, int magic, int width, int height) {
+        writeInt(data, 0, magic);
+        writeInt(data, 4, width);
+        writeInt(data, 8, height);
+    }
+
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.pixz;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Adaptive permit count for thumbnail generation (AIMD)
+ * Decode latency and throughput are measured over windows of completed decodes. While requests are
+ * queueing and latency stays close to the best seen, the limit grows by one; a step that bought no
+ * throughput is taken back, and degraded latency (the CPU or memory bandwidth is saturated) or a full
+ * heap shrinks the limit multiplicatively
+ * A 32-core workstation climbs towards its core count, a laptop settles near its physical cores
+ */
+public class ThumbnailConcurrencyLimiter {
+    private static final String MAX_PROPERTY = "pixz.thumbnail.maxConcurrency";
+
+    private static final int MIN_LIMIT = 1;
+    private static final int INITIAL_LIMIT = 4;
+
+    // Completed decodes per decision (at least this many, or twice the limit)
+    private static final int MIN_WINDOW_SAMPLES = 8;
+
+    // Latency this many times the baseline counts as saturation
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double DECREASE_FACTOR = 0.75;
+
+    // A probe must raise throughput by this fraction to be kept
+    private static final double MIN_PROBE_GAIN = 0.05;
+
+    // Windows to wait before probing again after a probe bought nothing
+    private static final int PROBE_COOLDOWN_WINDOWS = 5;
+
+    // Heap still in use after a collection above this fraction halves the limit - decoded originals are
+    // what fills it
+    private static final double HEAP_PRESSURE = 0.85;
+
+    // Old generation (or the single heap of non-generational collectors), whose occupancy after the last
+    // collection is what's actually live; null if the collector reports none
+    private static final MemoryPoolMXBean TENURED_POOL = findTenuredPool();
+
+    private final int maxLimit;
+    private int limit;
+    private int inFlight;
+
+    // Current window
+    private int windowSamples;
+    private long windowLatencyNanos;
+    private long windowStartNanos = System.nanoTime();
+    private boolean windowContended;
+
+    // History, for decisions and metrics
+    private double baselineLatencyNanos = Double.NaN;
+    private double lastLatencyNanos;
+    private double lastThroughput;
+    private String lastDecision = "initial";
+    private int probeCooldown;
+    private long increases;
+    private long decreases;
+
+    public ThumbnailConcurrencyLimiter() {
+        this.maxLimit = resolveMaxLimit();
+        this.limit = Math.min(INITIAL_LIMIT, maxLimit);
+    }
+
+    /**
+     * Upper bound the limit can grow to - size worker pools to this
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Block until a permit is available under the current limit
+     */
+    public synchronized void acquire() throws InterruptedException {
+        if (inFlight >= limit) {
+            windowContended = true;
+            while (inFlight >= limit) {
+                wait();
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * Return a permit without a sample (work whose latency says nothing about decode cost, e.g. videos)
+     */
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Return a permit and record how long the decode held it
+     */
+    public synchronized void release(long latencyNanos) {
+        release();
+        windowSamples++;
+        windowLatencyNanos += latencyNanos;
+        if (windowSamples >= Math.max(MIN_WINDOW_SAMPLES, limit * 2)) {
+            adjust();
+        }
+    }
+
+    public synchronized String getStats() {
+        return "limit=" + limit + "/" + maxLimit + ", inFlight=" + inFlight
+                + ", latency=" + Math.round(lastLatencyNanos / 1_000_000) + "ms"
+                + ", baseline=" + (Double.isNaN(baselineLatencyNanos) ? "-"
+                        : Math.round(baselineLatencyNanos / 1_000_000) + "ms")
+                + ", throughput=" + Math.round(lastThroughput) + "/s"
+                + ", increases=" + increases + ", decreases=" + decreases
+                + ", last=" + lastDecision;
+    }
+
+    private void adjust() {
+        long now = System.nanoTime();
+        double latency = (double) windowLatencyNanos / windowSamples;
+        double elapsedSeconds = Math.max(1e-3, (now - windowStartNanos) / 1e9);
+        double throughputBefore = lastThroughput;
+        lastThroughput = windowSamples / elapsedSeconds;
+        lastLatencyNanos = latency;
+        boolean contended = windowContended;
+        boolean probed = "probe".equals(lastDecision);
+
+        windowSamples = 0;
+        windowLatencyNanos = 0;
+        windowStartNanos = now;
+        windowContended = false;
+
+        // Best latency seen; at the minimum limit the latency is the unloaded cost by definition, which
+        // lets the baseline follow heavier workloads (e.g. a folder of larger photos) after backing off
+        if (Double.isNaN(baselineLatencyNanos) || latency < baselineLatencyNanos || limit == MIN_LIMIT) {
+            baselineLatencyNanos = latency;
+        }
+
+        int previous = limit;
+        if (heapUsage() > HEAP_PRESSURE) {
+            limit = Math.max(MIN_LIMIT, limit / 2);
+            lastDecision = "heap pressure";
+        } else if (latency > baselineLatencyNanos * LATENCY_TOLERANCE) {
+            limit = Math.max(MIN_LIMIT, (int) (limit * DECREASE_FACTOR));
+            lastDecision = "latency " + Math.round(latency / 1_000_000) + "ms";
+        } else if (probed && lastThroughput < throughputBefore * (1 + MIN_PROBE_GAIN)) {
+            limit = Math.max(MIN_LIMIT, limit - 1);
+            lastDecision = "no gain";
+            probeCooldown = PROBE_COOLDOWN_WINDOWS;
+        } else if (probeCooldown > 0) {
+            probeCooldown--;
+            lastDecision = "hold";
+        } else if (contended && limit < maxLimit) {
+            limit++;
+            lastDecision = "probe";
+        } else {
+            lastDecision = "hold";
+        }
+
+        if (limit != previous) {
+            if (limit > previous) {
+                increases++;
+                notifyAll();
+            } else {
+                decreases++;
+            }
+            System.out.println("Thumbnail concurrency " + previous + " -> " + limit + " (" + lastDecision
+                    + ", " + Math.round(lastThroughput) + " decodes/s)");
+        }
+    }
+
+    /**
+     * Fraction of the tenured pool still occupied after its last collection. Used minus free would count
+     * garbage not yet collected, so a heap about to be swept clean looks full between collections
+     */
+    private static double heapUsage() {
+        if (TENURED_POOL != null) {
+            MemoryUsage afterGc = TENURED_POOL.getCollectionUsage();
+            if (afterGc != null) {
+                long max = afterGc.getMax() > 0 ? afterGc.getMax() : Runtime.getRuntime().maxMemory();
+                return (double) afterGc.getUsed() / max;
+            }
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return (double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory();
+    }
+
+    /**
+     * The heap pool a collector reports post-collection usage and thresholds for - the old generation;
+     * young pools (eden, survivor) don't support thresholds. Largest such pool if there are several
+     */
+    private static MemoryPoolMXBean findTenuredPool() {
+        MemoryPoolMXBean tenured = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isValid() || !pool.isCollectionUsageThresholdSupported()) {
+                continue;
+            }
+            if (tenured == null || pool.getUsage().getMax() > tenured.getUsage().getMax()) {
+                tenured = pool;
+            }
+        }
+        return tenured;
+    }
+
+    private static int resolveMaxLimit() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        String configured = System.getProperty(MAX_PROPERTY);
+        if (configured != null) {
+            try {
+                return Math.max(MIN_LIMIT, Integer.parseInt(configured.trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("Ignoring invalid " + MAX_PROPERTY + ": " + configured);
+            }
+        }
+        return Math.max(MIN_LIMIT, cores);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.pixz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Negative cache for thumbnail generation, keyed like the thumbnail cache (path + mtime) so editing a
+ * file clears its record automatically
+ * Each failure pushes the next retry out exponentially (10 minutes, doubling, capped at a week), so a
+ * broken video costs its generation timeout once per backoff period instead of on every launch
+ * Thread-safe; persisted next to the pack
+ */
+public class ThumbnailFailures {
+    private static final int FILE_MAGIC = 0x50584631; // "PXF1"
+
+    private static final long BASE_BACKOFF_MS = 10 * 60 * 1000L;
+    private static final long MAX_BACKOFF_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    // Save on the calling thread after this many unsaved changes (also saved on shutdown)
+    private static final int AUTO_SAVE_THRESHOLD = 100;
+
+    public enum Cause {
+        DECODE_ERROR, // Image could not be decoded
+        MEDIA_ERROR, // Video could not be opened or played
+        TIMEOUT // No frame within the generation timeout
+    }
+
+    private final Path file;
+    private final Map<String, Failure> failures = new HashMap<>();
+    private int unsavedChanges;
+
+    /**
+     * @param file where the table is persisted, or null to keep it in memory only
+     */
+    public ThumbnailFailures(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * Record a failed attempt and schedule the next retry; returns the updated record
+     */
+    public synchronized Failure recordFailure(String key, String path, long lastModified, Cause cause, long now) {
+        Failure previous = failures.get(key);
+        int attempts = previous != null ? previous.attempts + 1 : 1;
+        long backoff = BASE_BACKOFF_MS << Math.min(attempts - 1, 20);
+        Failure failure = new Failure(path, lastModified, cause, attempts, now,
+                now + Math.min(backoff, MAX_BACKOFF_MS));
+        failures.put(key, failure);
+        afterChange();
+        return failure;
+    }
+
+    /**
+     * Forget a key (generation succeeded); no-op if it has no record
+     */
+    public synchronized void clear(String key) {
+        if (failures.remove(key) != null) {
+            afterChange();
+        }
+    }
+
+    public synchronized Failure get(String key) {
+        return failures.get(key);
+    }
+
+    /**
+     * Whether the key failed recently and its retry is not due yet
+     */
+    public synchronized boolean isBackedOff(String key, long now) {
+        Failure failure = failures.get(key);
+        return failure != null && failure.nextRetryMillis > now;
+    }
+
+    /**
+     * Snapshot of every record
+     */
+    public synchronized List<Failure> snapshot() {
+        return new ArrayList<>(failures.values());
+    }
+
+    public synchronized int size() {
+        return failures.size();
+    }
+
+    /**
+     * Drop records of files that were deleted or edited since they failed (an edit means a new key)
+     * Touches the filesystem once per record, so call it from a background thread
+     */
+    public int removeStale() {
+        int removed = 0;
+        for (Map.Entry<String, Failure> entry : snapshotEntries()) {
+            Failure failure = entry.getValue();
+            if (new File(failure.path).lastModified() != failure.lastModified) {
+                synchronized (this) {
+                    if (failures.remove(entry.getKey(), failure)) {
+                        afterChange();
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    private synchronized List<Map.Entry<String, Failure>> snapshotEntries() {
+        return new ArrayList<>(failures.entrySet());
+    }
+
+    public synchronized void clearAll() {
+        if (!failures.isEmpty()) {
+            failures.clear();
+            afterChange();
+        }
+    }
+
+    /**
+     * Write the table atomically (temp file + rename)
+     */
+    public synchronized void save() {
+        if (file == null || unsavedChanges == 0) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(failures.size());
+            for (Map.Entry<String, Failure> entry : failures.entrySet()) {
+                Failure failure = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(failure.path);
+                out.writeLong(failure.lastModified);
+                out.writeByte(failure.cause.ordinal());
+                out.writeInt(failure.attempts);
+                out.writeLong(failure.lastAttemptMillis);
+                out.writeLong(failure.nextRetryMillis);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to save thumbnail failures: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            unsavedChanges = 0;
+        } catch (IOException e) {
+            System.out.println("Failed to save thumbnail failures: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                Cause cause = Cause.values()[in.readUnsignedByte()];
+                failures.put(key, new Failure(path, lastModified, cause, in.readInt(), in.readLong(), in.readLong()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Worst case some broken files are retried once more
+            System.out.println("Thumbnail failures unreadable, starting empty: " + e.getMessage());
+            failures.clear();
+        }
+    }
+
+    private void afterChange() {
+        if (++unsavedChanges >= AUTO_SAVE_THRESHOLD) {
+            save();
+        }
+    }
+
+    /**
+     * One failed file: why, how often, and when it may be tried again
+     */
+    public static final class Failure {
+        final String path;
+        final long lastModified;
+        final Cause cause;
+        final int attempts;
+        final long lastAttemptMillis;
+        final long nextRetryMillis;
+
+        Failure(String path, long lastModified, Cause cause, int attempts, long lastAttemptMillis,
+                long nextRetryMillis) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.cause = cause;
+            this.attempts = attempts;
+            this.lastAttemptMillis = lastAttemptMillis;
+            this.nextRetryMillis = nextRetryMillis;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public Cause getCause() {
+            return cause;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getLastAttemptMillis() {
+            return lastAttemptMillis;
+        }
+
+        public long getNextRetryMillis() {
+            return nextRetryMillis;
+        }
+    }
+}
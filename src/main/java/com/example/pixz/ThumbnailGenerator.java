@@ -1,302 +1,694 @@
 package com.example.pixz;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
 
-import javafx.application.Platform;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
-import javafx.scene.media.MediaView;
 
 /**
  * Utility class for generating thumbnails from images and videos
- * Uses bounded thread pool and semaphore for memory-safe concurrent generation
+ * Uses bounded worker pool and an adaptive concurrency limit for memory-safe concurrent generation
  */
 public class ThumbnailGenerator {
-    private static final int THUMBNAIL_SIZE = 300; // Larger thumbnails for better visibility
+    // Level generated for every item; other levels are produced on demand
+    private static final ThumbnailSize DEFAULT_SIZE = ThumbnailSize.MEDIUM;
+
+    // Bounded worker pool - prevents decode storms; queued work runs in viewport order, not scan order
+    // Permits adapt to observed decode latency; workers are sized for the largest limit it may reach
+    private static final ThumbnailConcurrencyLimiter concurrencyLimiter = new ThumbnailConcurrencyLimiter();
+    private static final ThumbnailScheduler thumbnailScheduler = new ThumbnailScheduler("thumbnail-worker",
+            concurrencyLimiter.getMaxLimit());
+
+    // Image pipeline: I/O stage - many reads in flight on virtual threads, bounded by buffered bytes
+    private static final ExecutorService readExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("thumbnail-read-", 0).factory());
+    private static final int MAX_READS_IN_FLIGHT = 64;
+    private static final Semaphore readSlots = new Semaphore(MAX_READS_IN_FLIGHT);
+    private static final int READ_BUFFER_BUDGET_KB = (int) Math.min(256 * 1024,
+            Runtime.getRuntime().maxMemory() / 16 / 1024);
+    private static final Semaphore readBufferKb = new Semaphore(READ_BUFFER_BUDGET_KB);
+
+    // JPEG headers are read first - an embedded preview big enough for the level spares reading the original
+    private static final int JPEG_HEADER_BYTES = 128 * 1024;
+    private static final int MAX_PREVIEW_BYTES = 4 * 1024 * 1024;
+    private static final double PREVIEW_ASPECT_TOLERANCE = 0.02; // Rejects letterboxed previews
+    private static final LongAdder previewHits = new LongAdder();
+    private static final LongAdder fullReads = new LongAdder();
+    private static final LongAdder bytesRead = new LongAdder();
+    private static final LongAdder bytesSkipped = new LongAdder();
+
+    // Image pipeline: CPU stage - decodes from memory, concurrency set by the limiter
+    private static final ExecutorService decodeExecutor = Executors.newFixedThreadPool(
+            concurrencyLimiter.getMaxLimit(), runnable -> {
+                Thread thread = new Thread(runnable, "thumbnail-decode");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Video frames: a few reusable player slots - each player is a native demuxer and decoder of its own
+    private static final int VIDEO_SLOTS = 2;
+    private static final VideoThumbnailEngine videoEngine = new VideoThumbnailEngine(VIDEO_SLOTS);
+
+    // Scrub strips: evenly spaced frames for hover scrubbing, generated after the thumbnails
+    private static final int SCRUB_FRAMES = 10;
+    private static final int SCRUB_FRAME_PIXELS = 160;
+    private static final ConcurrentHashMap<String, CompletableFuture<Image>> stripsInFlight = new ConcurrentHashMap<>();
+    // Strips that failed this session - not recorded as thumbnail failures, the video may still have a frame
+    private static final Set<String> failedStrips = ConcurrentHashMap.newKeySet();
+
+    // Generations in flight by file + mtime + level - repeat requests (rescans, refresh) share one decode
+    private static final ConcurrentHashMap<String, Flight> inFlight = new ConcurrentHashMap<>();
+    private static final LongAdder startedGenerations = new LongAdder();
+    private static final LongAdder coalescedRequests = new LongAdder();
 
-    // Bounded thread pool - prevents decode storms
-    private static final ExecutorService thumbnailExecutor = Executors.newFixedThreadPool(4);
-
-    // Semaphore to limit concurrent thumbnail generation (4 in-flight max)
-    private static final Semaphore generationSemaphore = new Semaphore(4);
 
     /**
      * Generate thumbnail for an image file with caching
      * Checks cache first, generates only if needed
-     * Uses semaphore to limit concurrent generation
+     * Uses the concurrency limiter to limit concurrent generation
      */
     public static CompletableFuture<Image> generateImageThumbnail(File file) {
+        return generateImageThumbnail(file, DEFAULT_SIZE);
+    }
+
+    /**
+     * Generate an image thumbnail at one pyramid level
+     * Smaller levels are derived from a larger stored level when possible instead of decoding the original
+     */
+    public static CompletableFuture<Image> generateImageThumbnail(File file, ThumbnailSize size) {
         // Check cache first
-        Image cached = ThumbnailCache.getCachedThumbnail(file);
+        Image cached = ThumbnailCache.getCachedThumbnail(file, size);
         if (cached != null) {
             return CompletableFuture.completedFuture(cached);
         }
 
+        // Failed recently - don't pay for another attempt until its backoff expires
+        if (ThumbnailCache.hasFailed(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Known to have no decoder for its real format - reject before it takes a place in any queue
+        if (isKnownUndecodable(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Already being generated - wait for that instead of decoding again
+        Flight flight = new Flight(file, size);
+        Flight joined = joinFlight(flight);
+        if (joined != flight) {
+            return joined.newView();
+        }
+
         // Generate with throttling
-        CompletableFuture<Image> future = new CompletableFuture<>();
+        CompletableFuture<Image> future = flight.future;
 
-        thumbnailExecutor.submit(() -> {
+        // Workers pick files in viewport order and only reserve read buffer space; all file I/O (header
+        // sniff, content fingerprint, the original) happens on virtual threads and decoding on the CPU
+        // stage, so slow storage never idles the workers or the decoders
+        thumbnailScheduler.submit(file.getAbsolutePath(), future, () -> {
             try {
-                generationSemaphore.acquire(); // Throttle concurrent generation
+                ThumbnailCache.awaitWriteCapacity(); // Don't outrun the disk writer
+
+                int reservedKb = reserveReadBuffer(file);
                 try {
-                    // Load at reduced resolution for memory efficiency
-                    Image image = new Image(file.toURI().toString(), THUMBNAIL_SIZE, THUMBNAIL_SIZE, true, false,
-                            false);
-
-                    // Check if image loaded successfully
-                    if (image.isError() || image.getWidth() == 0 || image.getHeight() == 0) {
-                        future.complete(null);
-                    } else {
-                        future.complete(image);
-                    }
-                } finally {
-                    generationSemaphore.release();
+                    readExecutor.execute(() -> readOriginal(file, size, future, reservedKb));
+                } catch (RuntimeException e) {
+                    releaseReadBuffer(reservedKb);
+                    throw e;
                 }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 future.complete(null);
             } catch (Exception e) {
+                ThumbnailCache.markAsFailed(file, ThumbnailFailures.Cause.DECODE_ERROR);
                 future.complete(null);
             }
         });
 
-        // Cache to disk asynchronously (doesn't block thumbnail display)
+        // Hand off to the cache writer (only a queue insert on the completing thread)
         future.thenAccept(thumbnail -> {
             if (thumbnail != null) {
-                ThumbnailCache.cacheThumbnail(file, thumbnail);
+                ThumbnailCache.cacheThumbnail(file, thumbnail, size);
             }
         });
 
-        return future;
+        return flight.newView();
     }
 
     /**
      * Generate thumbnail for a video file with caching
      * Checks cache first, generates only if needed
-     * Uses semaphore to limit concurrent generation
+     * Frames come from the video engine's player slots, which are separate from image decode permits
      */
     public static CompletableFuture<Image> generateVideoThumbnail(File file) {
+        return generateVideoThumbnail(file, DEFAULT_SIZE);
+    }
+
+    /**
+     * Generate a video thumbnail at one pyramid level
+     */
+    public static CompletableFuture<Image> generateVideoThumbnail(File file, ThumbnailSize size) {
         // Check cache first
-        Image cached = ThumbnailCache.getCachedThumbnail(file);
+        Image cached = ThumbnailCache.getCachedThumbnail(file, size);
         if (cached != null) {
             return CompletableFuture.completedFuture(cached);
         }
 
-        CompletableFuture<Image> future = new CompletableFuture<>();
+        // Broken or unsupported videos would burn the full timeout again - wait for the backoff
+        if (ThumbnailCache.hasFailed(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Known to have no decoder for its real format - reject before it takes a place in any queue
+        if (isKnownUndecodable(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Flight flight = new Flight(file, size);
+        Flight joined = joinFlight(flight);
+        if (joined != flight) {
+            return joined.newView();
+        }
+
+        CompletableFuture<Image> future = flight.future;
 
-        // Acquire semaphore before starting generation
-        thumbnailExecutor.submit(() -> {
+        // Workers only hand the video to a virtual thread, which looks for an existing thumbnail; playback
+        // runs in the video engine's own slots, so videos never hold a worker or an image decode permit
+        // while a file is read or a player opens
+        thumbnailScheduler.submit(file.getAbsolutePath(), future, () -> {
             try {
-                generationSemaphore.acquire(); // Throttle concurrent generation
-
-                // Try JavaFX MediaPlayer (bundled with app)
-                tryJavaFXThumbnail(file, future);
-
-                // Add timeout fallback to placeholder (2 seconds total - faster for failed videos)
-                thumbnailExecutor.submit(() -> {
-                    try {
-                        Thread.sleep(2000);
-                        if (!future.isDone()) {
-                            System.out.println("Video thumbnail generation timed out for: " + file.getName());
-                            Image placeholder = createPlaceholderImage();
-                            future.complete(placeholder);
-                            // Don't cache placeholder - will be retried on refresh
-                        }
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    } catch (Exception e) {
-                        if (!future.isDone()) {
-                            future.complete(createPlaceholderImage());
-                        }
-                    }
-                    // Note: Semaphore released in whenComplete callback
-                });
+                ThumbnailCache.awaitWriteCapacity(); // Don't outrun the disk writer
+                readExecutor.execute(() -> startVideo(file, size, future));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                future.complete(createPlaceholderImage());
+                future.complete(createPlaceholderImage(size, ThumbnailProvenance.PLACEHOLDER));
             } catch (Exception e) {
                 System.out.println("Error generating video thumbnail for " + file.getName() + ": " + e.getMessage());
-                // Ensure future is completed even on unexpected errors
-                if (!future.isDone()) {
-                    future.complete(createPlaceholderImage());
-                }
+                failVideo(file, future, size, ThumbnailFailures.Cause.MEDIA_ERROR);
             }
         });
 
-        // Cache result and release semaphore when complete
-        future.whenComplete((thumbnail, throwable) -> {
-            // Release semaphore when done (success or failure)
-            generationSemaphore.release();
-
-            // Cache the result
+        // Cache the result
+        future.thenAccept(thumbnail -> {
             if (thumbnail != null) {
-                ThumbnailCache.cacheThumbnail(file, thumbnail);
+                ThumbnailCache.cacheThumbnail(file, thumbnail, size);
             }
         });
 
-        return future;
+        return flight.newView();
     }
 
     /**
-     * Create a placeholder image for videos that can't generate thumbnails
+     * I/O stage for videos (virtual thread): real format and content lookup, then a frame from the engine
      */
-    private static Image createPlaceholderImage() {
+    private static void startVideo(File file, ThumbnailSize size, CompletableFuture<Image> future) {
+        if (future.isDone()) {
+            return;
+        }
         try {
-            // Create a simple colored rectangle as placeholder
-            javafx.scene.canvas.Canvas canvas = new javafx.scene.canvas.Canvas(THUMBNAIL_SIZE, THUMBNAIL_SIZE);
-            javafx.scene.canvas.GraphicsContext gc = canvas.getGraphicsContext2D();
-
-            // Dark gray background
-            gc.setFill(javafx.scene.paint.Color.rgb(60, 60, 60));
-            gc.fillRect(0, 0, THUMBNAIL_SIZE, THUMBNAIL_SIZE);
-
-            // Play icon
-            gc.setFill(javafx.scene.paint.Color.rgb(200, 200, 200));
-            double centerX = THUMBNAIL_SIZE / 2.0;
-            double centerY = THUMBNAIL_SIZE / 2.0;
-            double size = 40; // Smaller for reduced thumbnail size
-
-            // Triangle play button
-            gc.fillPolygon(
-                    new double[] { centerX - size / 2, centerX + size / 2, centerX - size / 2 },
-                    new double[] { centerY - size / 2, centerY, centerY + size / 2 },
-                    3);
-
-            // Take snapshot
-            SnapshotParameters params = new SnapshotParameters();
-            params.setFill(javafx.scene.paint.Color.TRANSPARENT);
-            WritableImage placeholder = canvas.snapshot(params, null);
-
-            return placeholder;
+            // Header read off the FX thread - the request only checked the classifier's cache
+            if (!MediaTypeClassifier.classify(file).isDecodable()) {
+                future.complete(null);
+                return;
+            }
+
+            // Same content already cached under another path, or a larger level to scale down from
+            Image shared = findExisting(file, size);
+            if (shared != null) {
+                future.complete(shared);
+                return;
+            }
+
+            CompletableFuture<WritableImage> frame = videoEngine.extractFrame(file, size.getPixels());
+            frame.whenComplete((snapshot, throwable) -> {
+                if (snapshot != null) {
+                    if (future.complete(snapshot)) {
+                        ThumbnailCache.removeFromFailed(file);
+                    }
+                } else if (throwable instanceof VideoThumbnailEngine.FrameException) {
+                    VideoThumbnailEngine.FrameException failure = (VideoThumbnailEngine.FrameException) throwable;
+                    System.out.println("Video thumbnail failed for " + file.getName() + " ("
+                            + failure.getReason() + "): " + failure.getMessage());
+                    // Placeholder isn't cached - retried once the failure's backoff expires
+                    failVideo(file, future, size, failure.getReason());
+                }
+            });
+            // Abandoned (card scrolled away, no other waiters) - give the player slot back
+            future.whenComplete((thumbnail, throwable) -> frame.cancel(false));
         } catch (Exception e) {
-            return null;
+            System.out.println("Error generating video thumbnail for " + file.getName() + ": " + e.getMessage());
+            // Ensure future is completed even on unexpected errors
+            failVideo(file, future, size, ThumbnailFailures.Cause.MEDIA_ERROR);
         }
     }
 
     /**
-     * Try to generate thumbnail using JavaFX MediaPlayer
+     * Scrub strip for a video: SCRUB_FRAMES frames side by side, from the cache or generated in the video
+     * engine at background priority. Completes with null if the video has no usable strip
      */
-    private static void tryJavaFXThumbnail(File file, CompletableFuture<Image> future) {
-        Platform.runLater(() -> {
-            MediaPlayer mediaPlayer = null;
-            try {
-                System.out.println("Attempting JavaFX thumbnail for: " + file.getName());
-                Media media = new Media(file.toURI().toString());
-                mediaPlayer = new MediaPlayer(media);
-                MediaPlayer finalMediaPlayer = mediaPlayer;
-
-                // Flag to track if snapshot was taken
-                final boolean[] snapshotTaken = { false };
-                final MediaView[] mediaViewHolder = { null };
-
-                mediaPlayer.setOnReady(() -> {
-                    try {
-                        // Create MediaView only when ready
-                        MediaView mediaView = new MediaView(finalMediaPlayer);
-                        mediaView.setFitWidth(THUMBNAIL_SIZE);
-                        mediaView.setFitHeight(THUMBNAIL_SIZE);
-                        mediaView.setPreserveRatio(true); // Don't squeeze, will be cropped in display
-                        mediaViewHolder[0] = mediaView;
-
-                        // Try to take snapshot immediately without seeking
-                        Platform.runLater(() -> {
-                            try {
-                                if (!snapshotTaken[0] && mediaViewHolder[0] != null) {
-                                    snapshotTaken[0] = true;
-                                    SnapshotParameters params = new SnapshotParameters();
-                                    params.setFill(javafx.scene.paint.Color.BLACK); // Use black background instead of
-                                                                                    // white
-                                    WritableImage snapshot = mediaViewHolder[0].snapshot(params, null);
-
-                                    if (snapshot != null && snapshot.getWidth() > 0 && snapshot.getHeight() > 0) {
-                                        future.complete(snapshot);
-                                        finalMediaPlayer.stop();
-                                        finalMediaPlayer.dispose();
-                                    } else {
-                                        future.complete(createPlaceholderImage());
-                                        finalMediaPlayer.stop();
-                                        finalMediaPlayer.dispose();
-                                    }
-                                }
-                            } catch (Exception ex) {
-                                future.complete(createPlaceholderImage());
-                                finalMediaPlayer.stop();
-                                finalMediaPlayer.dispose();
-                            }
-                        });
-                    } catch (Exception e) {
-                        finalMediaPlayer.stop();
-                        finalMediaPlayer.dispose();
-                        if (!future.isDone()) {
-                            future.complete(createPlaceholderImage());
-                        }
-                    }
-                });
+    public static CompletableFuture<Image> generateScrubStrip(File file) {
+        Image cached = ThumbnailCache.getMemoryCachedScrubStrip(file);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        String key = file.getAbsolutePath() + "_" + file.lastModified();
+        if (failedStrips.contains(key) || ThumbnailCache.hasFailed(file) || isKnownUndecodable(file)) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                mediaPlayer.setOnError(() -> {
-                    finalMediaPlayer.stop();
-                    finalMediaPlayer.dispose();
-                    if (!future.isDone()) {
-                        future.complete(createPlaceholderImage());
-                    }
-                });
-
-                // Timeout fallback (4 seconds for JavaFX attempt)
-                MediaPlayer timeoutPlayer = mediaPlayer;
-                javafx.animation.PauseTransition timeout = new javafx.animation.PauseTransition(
-                        javafx.util.Duration.seconds(4));
-                timeout.setOnFinished(e -> {
-                    if (!future.isDone()) {
-                        timeoutPlayer.stop();
-                        timeoutPlayer.dispose();
-                        future.complete(createPlaceholderImage());
-                    }
-                });
-                timeout.play();
+        CompletableFuture<Image> strip = new CompletableFuture<>();
+        CompletableFuture<Image> existing = stripsInFlight.putIfAbsent(key, strip);
+        if (existing != null) {
+            return existing;
+        }
+        strip.whenComplete((image, throwable) -> stripsInFlight.remove(key, strip));
 
-            } catch (Exception e) {
-                if (mediaPlayer != null) {
-                    mediaPlayer.stop();
-                    mediaPlayer.dispose();
+        // Stored strip first (disk read on a virtual thread), the engine only if there is none
+        readExecutor.execute(() -> {
+            if (!MediaTypeClassifier.classify(file).isDecodable()) {
+                strip.complete(null);
+                return;
+            }
+            Image stored = ThumbnailCache.getCachedScrubStrip(file, getScrubStripMaxEdge());
+            if (stored != null) {
+                strip.complete(stored);
+                return;
+            }
+            videoEngine.extractStrip(file, SCRUB_FRAMES, SCRUB_FRAME_PIXELS).whenComplete((image, throwable) -> {
+                if (image != null) {
+                    ThumbnailCache.cacheScrubStrip(file, image);
+                } else {
+                    failedStrips.add(key);
+                    System.out.println("Scrub strip failed for " + file.getName() + ": "
+                            + (throwable != null ? throwable.getMessage() : "no frames"));
                 }
-                if (!future.isDone()) {
-                    future.complete(createPlaceholderImage());
+                strip.complete(image);
+            });
+        });
+        return strip;
+    }
+
+    /**
+     * Number of frames in a scrub strip (frames are equally wide, left to right)
+     */
+    public static int getScrubFrameCount() {
+        return SCRUB_FRAMES;
+    }
+
+    /**
+     * Longest edge a scrub strip can have - decode stored strips at this size
+     */
+    public static int getScrubStripMaxEdge() {
+        return SCRUB_FRAMES * SCRUB_FRAME_PIXELS;
+    }
+
+    /**
+     * Reserve read buffer space for a file (blocks while earlier reads hold the budget)
+     * Files larger than the whole budget reserve all of it, so they are read one at a time
+     */
+    private static int reserveReadBuffer(File file) throws InterruptedException {
+        int kb = (int) Math.min(READ_BUFFER_BUDGET_KB, Math.max(1, file.length() / 1024 + 1));
+        readSlots.acquire();
+        try {
+            readBufferKb.acquire(kb);
+        } catch (InterruptedException e) {
+            readSlots.release();
+            throw e;
+        }
+        return kb;
+    }
+
+    private static void releaseReadBuffer(int kb) {
+        readBufferKb.release(kb);
+        readSlots.release();
+    }
+
+    /**
+     * I/O stage (virtual thread): check the real format and for an existing thumbnail of the same content,
+     * otherwise pull the original into memory and queue it for decoding
+     */
+    private static void readOriginal(File file, ThumbnailSize size, CompletableFuture<Image> future,
+            int reservedKb) {
+        if (future.isDone()) {
+            releaseReadBuffer(reservedKb);
+            return;
+        }
+        byte[] bytes;
+        try {
+            // Header read off the FX thread - the request only checked the classifier's cache
+            if (!MediaTypeClassifier.classify(file).isDecodable()) {
+                releaseReadBuffer(reservedKb);
+                future.complete(null);
+                return;
+            }
+
+            // Same content already cached under another path, or a larger level to scale down from
+            Image shared = findExisting(file, size);
+            if (shared != null) {
+                releaseReadBuffer(reservedKb);
+                future.complete(shared);
+                return;
+            }
+
+            byte[] preview = readEmbeddedPreview(file, size);
+            bytes = preview != null ? preview : readOriginalBytes(file);
+        } catch (Exception e) {
+            releaseReadBuffer(reservedKb);
+            System.out.println("Failed to read " + file.getName() + ": " + e.getMessage());
+            ThumbnailCache.markAsFailed(file, ThumbnailFailures.Cause.DECODE_ERROR);
+            future.complete(null);
+            return;
+        }
+        try {
+            decodeExecutor.execute(() -> decodeOriginal(file, size, future, bytes, reservedKb));
+        } catch (RuntimeException e) {
+            releaseReadBuffer(reservedKb); // Shutting down
+            future.complete(null);
+        }
+    }
+
+    /**
+     * Smallest preview embedded in a JPEG's header (EXIF thumbnail, MPF large thumbnail) that covers the
+     * level with the main image's aspect ratio, or null to read the whole file
+     * Touches only the header and the preview bytes
+     */
+    private static byte[] readEmbeddedPreview(File file, ThumbnailSize size) throws IOException {
+        if (MediaTypeClassifier.classify(file) != MediaTypeClassifier.Kind.JPEG) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            byte[] header = readRange(channel, 0, (int) Math.min(JPEG_HEADER_BYTES, fileLength));
+            long touched = header.length;
+            int[] main = EmbeddedPreviews.dimensions(header);
+            if (main == null || main[0] == 0 || main[1] == 0) {
+                bytesRead.add(touched);
+                return null;
+            }
+            double mainAspect = (double) main[0] / main[1];
+            for (EmbeddedPreviews.Preview preview : EmbeddedPreviews.find(header)) {
+                if (preview.getLength() > MAX_PREVIEW_BYTES
+                        || preview.getOffset() + preview.getLength() > fileLength) {
+                    continue;
+                }
+                byte[] bytes = preview.getOffset() + preview.getLength() <= header.length
+                        ? Arrays.copyOfRange(header, (int) preview.getOffset(),
+                                (int) preview.getOffset() + preview.getLength())
+                        : readRange(channel, preview.getOffset(), preview.getLength());
+                touched += bytes.length;
+                int[] dims = EmbeddedPreviews.dimensions(bytes);
+                if (dims == null || dims[1] == 0 || Math.max(dims[0], dims[1]) < size.getPixels()) {
+                    continue;
+                }
+                double aspect = (double) dims[0] / dims[1];
+                if (Math.abs(aspect - mainAspect) <= mainAspect * PREVIEW_ASPECT_TOLERANCE) {
+                    previewHits.increment();
+                    bytesRead.add(touched);
+                    bytesSkipped.add(fileLength - touched);
+                    return bytes;
                 }
             }
+            bytesRead.add(touched);
+            return null;
+        }
+    }
+
+    private static byte[] readOriginalBytes(File file) throws IOException {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        fullReads.increment();
+        bytesRead.add(bytes.length);
+        return bytes;
+    }
+
+    private static byte[] readRange(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == length ? buffer.array()
+                : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Embedded previews used vs. originals read in full, and how many bytes that spared
+     */
+    public static String getReadStats() {
+        return "previews=" + previewHits.sum() + ", fullReads=" + fullReads.sum()
+                + ", read=" + bytesRead.sum() / (1024 * 1024) + "MB"
+                + ", skipped=" + bytesSkipped.sum() / (1024 * 1024) + "MB";
+    }
+
+    /**
+     * CPU stage: decode the buffered original (or its embedded preview) at reduced resolution
+     */
+    private static void decodeOriginal(File file, ThumbnailSize size, CompletableFuture<Image> future,
+            byte[] bytes, int reservedKb) {
+        try {
+            if (future.isDone()) {
+                return;
+            }
+            concurrencyLimiter.acquire(); // Throttle concurrent generation
+            long decodeStart = System.nanoTime();
+            try {
+                // Load at reduced resolution for memory efficiency
+                Image image = new Image(new ByteArrayInputStream(bytes), size.getPixels(), size.getPixels(),
+                        true, false);
+
+                // Check if image loaded successfully
+                if (image.isError() || image.getWidth() == 0 || image.getHeight() == 0) {
+                    ThumbnailCache.markAsFailed(file, ThumbnailFailures.Cause.DECODE_ERROR);
+                    future.complete(null);
+                } else {
+                    ThumbnailCache.removeFromFailed(file);
+                    future.complete(image);
+                }
+            } finally {
+                concurrencyLimiter.release(System.nanoTime() - decodeStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.complete(null);
+        } catch (Exception e) {
+            ThumbnailCache.markAsFailed(file, ThumbnailFailures.Cause.DECODE_ERROR);
+            future.complete(null);
+        } finally {
+            releaseReadBuffer(reservedKb);
+        }
+    }
+
+    /**
+     * Join the generation already in flight for the candidate's file and level, or register the candidate
+     * Returns the candidate itself when the caller has to run the generation
+     */
+    private static Flight joinFlight(Flight candidate) {
+        Flight flight = inFlight.compute(candidate.key, (k, current) -> {
+            Flight joined = current != null && !current.abandoned ? current : candidate;
+            joined.waiters++;
+            return joined;
         });
+        if (flight == candidate) {
+            startedGenerations.increment();
+            flight.future.whenComplete((thumbnail, throwable) -> inFlight.remove(flight.key, flight));
+        } else {
+            coalescedRequests.increment();
+        }
+        return flight;
+    }
+
+    /**
+     * Generations started vs. requests that joined one already in flight
+     */
+    public static String getCoalescingStats() {
+        long started = startedGenerations.sum();
+        long coalesced = coalescedRequests.sum();
+        long total = started + coalesced;
+        return "started=" + started + ", coalesced=" + coalesced + " ("
+                + (total > 0 ? coalesced * 100 / total : 0) + "% of requests shared a generation)";
+    }
+
+    /**
+     * Video frame extraction outcomes
+     */
+    public static String getVideoStats() {
+        return videoEngine.getStats();
+    }
+
+    /**
+     * Current generation concurrency and the controller's recent decisions
+     */
+    public static String getConcurrencyStats() {
+        return concurrencyLimiter.getStats();
     }
 
     /**
-     * Check if file is a supported image format
+     * Complete with a placeholder and record the failure - unless another path completed the future first
+     */
+    private static void failVideo(File file, CompletableFuture<Image> future, ThumbnailSize size,
+            ThumbnailFailures.Cause cause) {
+        if (!future.isDone()
+                && future.complete(createPlaceholderImage(size, ThumbnailProvenance.forFailure(cause)))) {
+            ThumbnailCache.markAsFailed(file, cause);
+        }
+    }
+
+    /**
+     * Thumbnail that needs no decode of the original: shared content, or a larger stored level
+     * Reads the disk, so only call from a worker thread
+     */
+    private static Image findExisting(File file, ThumbnailSize size) {
+        Image shared = ThumbnailCache.findByContent(file, size);
+        return shared != null ? shared : ThumbnailCache.deriveFromStored(file, size);
+    }
+
+    /**
+     * Rejected by the classifier's cache alone - requests arrive on the FX thread, so no header is read here
+     */
+    private static boolean isKnownUndecodable(File file) {
+        MediaTypeClassifier.Kind kind = MediaTypeClassifier.peek(file);
+        return kind != null && !kind.isDecodable();
+    }
+
+    /**
+     * Create a placeholder image for videos that can't generate thumbnails
+     * Tagged with its provenance so it is recognised without reading pixels. Drawn straight into the
+     * pixels rather than snapshotting a canvas, so failures can complete it from any thread (the video
+     * timeout fires on its scheduler, workers run off the FX thread)
+     */
+    private static Image createPlaceholderImage(ThumbnailSize level, ThumbnailProvenance provenance) {
+        int thumbnailSize = level.getPixels();
+        int background = 0xFF3C3C3C; // Dark gray
+        int icon = 0xFFC8C8C8;
+        int[] pixels = new int[thumbnailSize * thumbnailSize];
+        Arrays.fill(pixels, background);
+
+        // Triangle play button, pointing right
+        double centerX = thumbnailSize / 2.0;
+        double centerY = thumbnailSize / 2.0;
+        double half = 20; // Smaller for reduced thumbnail size
+        int top = (int) Math.max(0, Math.ceil(centerY - half));
+        int bottom = (int) Math.min(thumbnailSize - 1, Math.floor(centerY + half));
+        for (int y = top; y <= bottom; y++) {
+            double width = 2 * half * (1 - Math.abs(y + 0.5 - centerY) / half);
+            int left = (int) Math.max(0, Math.round(centerX - half));
+            int right = (int) Math.min(thumbnailSize, Math.round(centerX - half + width));
+            if (right > left) {
+                Arrays.fill(pixels, y * thumbnailSize + left, y * thumbnailSize + right, icon);
+            }
+        }
+
+        PlaceholderImage placeholder = new PlaceholderImage(thumbnailSize, thumbnailSize, provenance);
+        placeholder.getPixelWriter().setPixels(0, 0, thumbnailSize, thumbnailSize,
+                PixelFormat.getIntArgbInstance(), pixels, 0, thumbnailSize);
+        return placeholder;
+    }
+
+    /**
+     * Check if file is a supported image format - by its content (see MediaTypeClassifier), so a
+     * misnamed file is rejected and an extensionless JPEG from a camera dump is found
      */
     public static boolean isImageFile(File file) {
-        String name = file.getName().toLowerCase();
-        return name.endsWith(".jpg") || name.endsWith(".jpeg") ||
-                name.endsWith(".png") || name.endsWith(".gif") ||
-                name.endsWith(".bmp");
+        return mediaTypeOf(MediaTypeClassifier.classify(file)) == MediaItem.MediaType.IMAGE;
     }
 
     /**
-     * Check if file is a supported video format
+     * Check if file is a video - by its content; containers JavaFX can't play (AVI, MKV) are still listed
+     * but get no generated thumbnail
      */
     public static boolean isVideoFile(File file) {
-        String name = file.getName().toLowerCase();
-        return name.endsWith(".mp4") || name.endsWith(".avi") ||
-                name.endsWith(".mov") || name.endsWith(".mkv") ||
-                name.endsWith(".m4v") || name.endsWith(".flv");
+        return mediaTypeOf(MediaTypeClassifier.classify(file)) == MediaItem.MediaType.VIDEO;
+    }
+
+    /**
+     * Gallery type for a detected kind, or null if the gallery doesn't list it
+     */
+    public static MediaItem.MediaType mediaTypeOf(MediaTypeClassifier.Kind kind) {
+        if (kind.getFamily() == MediaTypeClassifier.Family.IMAGE && kind.isDecodable()) {
+            return MediaItem.MediaType.IMAGE;
+        }
+        return kind.getFamily() == MediaTypeClassifier.Family.VIDEO ? MediaItem.MediaType.VIDEO : null;
+    }
+
+    /**
+     * One shared generation; every requester gets its own view, so a requester cancelling (e.g. its card
+     * scrolled away) only stops the generation once nobody else is waiting for it
+     */
+    private static final class Flight {
+        final String key;
+        final CompletableFuture<Image> future = new CompletableFuture<>();
+        int waiters; // Guarded by inFlight.compute on key
+        boolean abandoned; // Guarded by inFlight.compute on key
+
+        // Keyed like the thumbnail cache (path + mtime), so an edited file never joins a stale generation
+        Flight(File file, ThumbnailSize size) {
+            this.key = file.getAbsolutePath() + "_" + file.lastModified() + "_" + size;
+        }
+
+        CompletableFuture<Image> newView() {
+            CompletableFuture<Image> view = new CompletableFuture<>();
+            future.whenComplete((thumbnail, throwable) -> {
+                if (throwable != null) {
+                    view.completeExceptionally(throwable);
+                } else {
+                    view.complete(thumbnail);
+                }
+            });
+            view.whenComplete((thumbnail, throwable) -> {
+                if (view.isCancelled()) {
+                    leave();
+                }
+            });
+            return view;
+        }
+
+        private void leave() {
+            boolean[] abandon = { false };
+            inFlight.computeIfPresent(key, (k, current) -> {
+                if (current == this && --waiters == 0) {
+                    abandoned = true;
+                    abandon[0] = true;
+                    return null;
+                }
+                return current;
+            });
+            // Outside compute - cancelling runs completion callbacks that touch the map
+            if (abandon[0]) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Re-rank queued generation for the cards now on screen and the band around them
+     */
+    public static void updateViewport(Collection<String> visiblePaths, Collection<String> prefetchPaths) {
+        thumbnailScheduler.updateViewport(visiblePaths, prefetchPaths);
     }
 
     /**
-     * Shutdown the executor service (call on app exit)
+     * Shutdown the workers (call on app exit)
      */
     public static void shutdown() {
-        thumbnailExecutor.shutdown();
+        thumbnailScheduler.shutdown();
+        readExecutor.shutdownNow();
+        decodeExecutor.shutdownNow();
+        videoEngine.shutdown();
     }
 }
@@ -0,0 +1,208 @@
+package com.example.pixz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory table of every thumbnail in the pack: location, pixel size and last access
+ * Persisted next to the pack so startup loads it in one read instead of probing the filesystem
+ * Not thread-safe - callers guard it (ThumbnailPackStore uses its read/write lock)
+ */
+public class ThumbnailIndex {
+    private static final int FILE_MAGIC = 0x50584931; // "PXI1"
+    private static final int FILE_VERSION = 3; // v2 adds last access time, v3 drops the status byte
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // Snapshot metadata - which segment and how much of it the saved table covers
+    private long generation;
+    private long coveredSize;
+
+    public Entry get(String key) {
+        return entries.get(key);
+    }
+
+    public Entry put(String key, Entry entry) {
+        return entries.put(key, entry);
+    }
+
+    public Entry remove(String key) {
+        return entries.remove(key);
+    }
+
+    public boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Snapshot of all entries (safe to iterate while the table changes)
+     */
+    public List<Map.Entry<String, Entry>> snapshot() {
+        return new ArrayList<>(entries.entrySet());
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getCoveredSize() {
+        return coveredSize;
+    }
+
+    /**
+     * Load a saved table, or return null if the file is missing or unreadable
+     */
+    public static ThumbnailIndex load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return null;
+            }
+            int version = in.readInt();
+            if (version < 1 || version > FILE_VERSION) {
+                return null;
+            }
+            ThumbnailIndex index = new ThumbnailIndex();
+            index.generation = in.readLong();
+            index.coveredSize = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                long recordOffset = in.readLong();
+                int recordLength = in.readInt();
+                int dataLength = in.readInt();
+                long created = in.readLong();
+                int width = in.readUnsignedShort();
+                int height = in.readUnsignedShort();
+                if (version < 3) {
+                    in.readUnsignedByte(); // Status - failures live in ThumbnailFailures, so always ready
+                }
+                Entry entry = new Entry(recordOffset, recordLength, dataLength, created, width, height);
+                entry.lastAccessMillis = version >= 2 ? in.readLong() : created;
+                index.entries.put(key, entry);
+            }
+            return index;
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Thumbnail index unreadable, rebuilding: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Write the table atomically (temp file + rename) so a crash never leaves a torn index
+     */
+    public void save(Path file, long generation, long coveredSize) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(generation);
+            out.writeLong(coveredSize);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.recordOffset);
+                out.writeInt(entry.recordLength);
+                out.writeInt(entry.dataLength);
+                out.writeLong(entry.createdMillis);
+                out.writeShort(entry.width);
+                out.writeShort(entry.height);
+                out.writeLong(entry.lastAccessMillis);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        this.generation = generation;
+        this.coveredSize = coveredSize;
+    }
+
+    /**
+     * One thumbnail record - immutable apart from the access time, replaced wholesale on update
+     */
+    public static final class Entry {
+        // Access times only need minute precision for LRU eviction
+        private static final long ACCESS_GRANULARITY_MS = 60_000;
+
+        final long recordOffset;
+        final int recordLength;
+        final int dataLength;
+        final long createdMillis;
+        final int width;
+        final int height;
+
+        // Updated on cache hits without the write lock - a lost race only costs LRU precision
+        volatile long lastAccessMillis;
+
+        Entry(long recordOffset, int recordLength, int dataLength, long createdMillis, int width, int height) {
+            this.recordOffset = recordOffset;
+            this.recordLength = recordLength;
+            this.dataLength = dataLength;
+            this.createdMillis = createdMillis;
+            this.width = width;
+            this.height = height;
+            this.lastAccessMillis = createdMillis;
+        }
+
+        // Data sits at the end of the record
+        long dataOffset() {
+            return recordOffset + recordLength - dataLength;
+        }
+
+        Entry relocate(long newRecordOffset) {
+            Entry moved = new Entry(newRecordOffset, recordLength, dataLength, createdMillis, width, height);
+            moved.lastAccessMillis = lastAccessMillis;
+            return moved;
+        }
+
+        /**
+         * Record a cache hit; returns true if the stored access time changed
+         */
+        boolean touch(long now) {
+            if (now - lastAccessMillis < ACCESS_GRANULARITY_MS) {
+                return false;
+            }
+            lastAccessMillis = now;
+            return true;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getCreatedMillis() {
+            return createdMillis;
+        }
+
+        public long getLastAccessMillis() {
+            return lastAccessMillis;
+        }
+
+        public int getRecordLength() {
+            return recordLength;
+        }
+    }
+}
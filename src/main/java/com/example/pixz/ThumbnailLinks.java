@@ -0,0 +1,218 @@
+package com.example.pixz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Path layer of the thumbnail cache: maps a path key (path + mtime) to the content key its thumbnail is
+ * stored under, so copies and moved files share one thumbnail in the pack
+ * Keeps a reference count per content key so a shared thumbnail is only dropped with its last path
+ */
+public class ThumbnailLinks {
+    private static final int FILE_MAGIC = 0x50584C31; // "PXL1"
+
+    // Save on the calling thread after this many unsaved changes (also saved on shutdown)
+    private static final int AUTO_SAVE_THRESHOLD = 1000;
+
+    private final Path file;
+    private final Map<String, Link> links = new HashMap<>();
+    private final Map<String, Integer> referenceCounts = new HashMap<>();
+
+    // One path key per content key, used to find a competing file when verifying a fingerprint match
+    private final Map<String, String> ownerPathKeys = new HashMap<>();
+    private int unsavedChanges;
+
+    public ThumbnailLinks(Path file) {
+        this.file = file;
+        load();
+    }
+
+    public synchronized String getContentKey(String pathKey) {
+        Link link = links.get(pathKey);
+        return link != null ? link.contentKey : null;
+    }
+
+    public synchronized Link get(String pathKey) {
+        return links.get(pathKey);
+    }
+
+    /**
+     * Point a path key at a content key
+     * Returns the content key this path used to reference if nothing references it any more, otherwise null
+     */
+    public synchronized String link(String pathKey, String contentKey, String path, long lastModified) {
+        Link previous = links.put(pathKey, new Link(contentKey, path, lastModified));
+        afterChange();
+        if (previous != null && previous.contentKey.equals(contentKey)) {
+            return null;
+        }
+        referenceCounts.merge(contentKey, 1, Integer::sum);
+        ownerPathKeys.putIfAbsent(contentKey, pathKey);
+        if (previous != null && release(previous.contentKey, pathKey)) {
+            return previous.contentKey;
+        }
+        return null;
+    }
+
+    /**
+     * Remove a path key; returns its content key if that was the last reference, otherwise null
+     */
+    public synchronized String unlink(String pathKey) {
+        Link removed = links.remove(pathKey);
+        if (removed == null) {
+            return null;
+        }
+        afterChange();
+        return release(removed.contentKey, pathKey) ? removed.contentKey : null;
+    }
+
+    public synchronized int getReferenceCount(String contentKey) {
+        return referenceCounts.getOrDefault(contentKey, 0);
+    }
+
+    /**
+     * Source path of another file already linked to this content, or null
+     */
+    public synchronized String findOtherPath(String contentKey, String excludingPath) {
+        String ownerPathKey = ownerPathKeys.get(contentKey);
+        Link owner = ownerPathKey != null ? links.get(ownerPathKey) : null;
+        if (owner == null || owner.path.equals(excludingPath)) {
+            return null;
+        }
+        return owner.path;
+    }
+
+    /**
+     * Snapshot of all path keys and their links
+     */
+    public synchronized List<Map.Entry<String, Link>> snapshot() {
+        return new ArrayList<>(links.entrySet());
+    }
+
+    public synchronized int size() {
+        return links.size();
+    }
+
+    /**
+     * Write the table atomically (temp file + rename)
+     */
+    public synchronized void save() {
+        if (unsavedChanges == 0) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(links.size());
+            for (Map.Entry<String, Link> entry : links.entrySet()) {
+                Link link = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeUTF(link.contentKey);
+                out.writeUTF(link.path);
+                out.writeLong(link.lastModified);
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to save thumbnail links: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            unsavedChanges = 0;
+        } catch (IOException e) {
+            System.out.println("Failed to save thumbnail links: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String pathKey = in.readUTF();
+                Link link = new Link(in.readUTF(), in.readUTF(), in.readLong());
+                links.put(pathKey, link);
+                referenceCounts.merge(link.contentKey, 1, Integer::sum);
+                ownerPathKeys.putIfAbsent(link.contentKey, pathKey);
+            }
+        } catch (IOException e) {
+            // Links are rebuilt from fingerprints as thumbnails are requested
+            System.out.println("Thumbnail links unreadable, starting empty: " + e.getMessage());
+            links.clear();
+            referenceCounts.clear();
+            ownerPathKeys.clear();
+        }
+    }
+
+    /**
+     * Drop one reference, called after the path's link is already gone or repointed
+     */
+    private boolean release(String contentKey, String pathKey) {
+        Integer count = referenceCounts.get(contentKey);
+        if (count == null || count <= 1) {
+            referenceCounts.remove(contentKey);
+            ownerPathKeys.remove(contentKey);
+            return true;
+        }
+        referenceCounts.put(contentKey, count - 1);
+        if (pathKey.equals(ownerPathKeys.get(contentKey))) {
+            // Hand ownership to a surviving path so collision checks still have a file to compare with
+            // (a scan, but only when the owner of shared content goes)
+            ownerPathKeys.remove(contentKey);
+            for (Map.Entry<String, Link> entry : links.entrySet()) {
+                if (entry.getValue().contentKey.equals(contentKey)) {
+                    ownerPathKeys.put(contentKey, entry.getKey());
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void afterChange() {
+        if (++unsavedChanges >= AUTO_SAVE_THRESHOLD) {
+            save();
+        }
+    }
+
+    /**
+     * Where a path's thumbnail lives, plus the identity it was linked under
+     */
+    public static final class Link {
+        final String contentKey;
+        final String path;
+        final long lastModified;
+
+        Link(String contentKey, String path, long lastModified) {
+            this.contentKey = contentKey;
+            this.path = path;
+            this.lastModified = lastModified;
+        }
+
+        public String getContentKey() {
+            return contentKey;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+}
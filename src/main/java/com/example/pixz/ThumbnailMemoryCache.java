@@ -0,0 +1,146 @@
+package com.example.pixz;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javafx.scene.image.Image;
+
+/**
+ * Bounded in-memory thumbnail tier
+ * Keeps decoded thumbnails strongly reachable in LRU order until the byte budget is exceeded,
+ * so scrolling back over recently seen items never has to touch the disk cache again
+ */
+public class ThumbnailMemoryCache {
+    // Decoded JavaFX images are stored as 32-bit pixels
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final long budgetBytes;
+    private long usedBytes;
+
+    // Counters exposed for diagnostics
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ThumbnailMemoryCache(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+    }
+
+    /**
+     * Get a thumbnail and mark it as most recently used
+     */
+    public synchronized Image get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits++;
+            return entry.image;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Add or replace a thumbnail, evicting least recently used entries to stay within budget
+     */
+    public synchronized void put(String key, Image image) {
+        if (key == null || image == null) {
+            return;
+        }
+
+        long size = sizeOf(image);
+        if (size > budgetBytes) {
+            // Larger than the whole budget - never worth keeping
+            remove(key);
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(image, size));
+        if (previous != null) {
+            usedBytes -= previous.size;
+        }
+        usedBytes += size;
+        evictToBudget();
+    }
+
+    /**
+     * Remove a single thumbnail
+     */
+    public synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.size;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * One-line summary of the counters for logging
+     */
+    public synchronized String getStats() {
+        long lookups = hits + misses;
+        double hitRate = lookups == 0 ? 0 : (hits * 100.0) / lookups;
+        return String.format("entries=%d used=%dKB budget=%dKB hits=%d misses=%d (%.1f%% hit) evictions=%d",
+                entries.size(), usedBytes / 1024, budgetBytes / 1024, hits, misses, hitRate, evictions);
+    }
+
+    private void evictToBudget() {
+        // Access-ordered map iterates from least to most recently used
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            usedBytes -= eldest.getValue().size;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimate decoded size - falls back to the requested size while a background load is still running
+     */
+    private static long sizeOf(Image image) {
+        double width = image.getWidth() > 0 ? image.getWidth() : image.getRequestedWidth();
+        double height = image.getHeight() > 0 ? image.getHeight() : image.getRequestedHeight();
+        return (long) Math.max(1, width) * (long) Math.max(1, height) * BYTES_PER_PIXEL;
+    }
+
+    // Size is recorded at insertion so accounting stays stable if a background load finishes later
+    private static final class Entry {
+        final Image image;
+        final long size;
+
+        Entry(Image image, long size) {
+            this.image = image;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,741 @@
+package com.example.pixz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Append-only pack file holding every cached thumbnail
+ * Replaces one-file-per-thumbnail storage so lookups need no open() and cold
+ * starts read thumbnails through a single memory-mapped segment
+ *
+ * Record layout: magic | kind | created millis | width | height | key length | key | data length | data
+ * Removals append a tombstone; dead space is reclaimed by compacting into a new segment, which the cache
+ * maintenance thread triggers. The copy runs without the write lock - only carrying over what changed
+ * during it and switching segments block appends and lookups
+ * The key table is snapshotted to thumbnails.idx, so opening only replays records appended since
+ */
+public class ThumbnailPackStore {
+    private static final int RECORD_MAGIC = 0x50584B33; // "PXK3"
+    private static final int STATUS_RECORD_MAGIC = 0x50584B32; // "PXK2" - plus a status byte, always ready
+    private static final int LEGACY_RECORD_MAGIC = 0x50584B31; // "PXK1" - no size fields
+    private static final byte KIND_TOMBSTONE = 0;
+    private static final byte KIND_DATA = 1;
+    private static final int HEADER_BYTES = 4 + 1 + 8 + 2 + 2 + 2; // magic .. key length
+    private static final int STATUS_HEADER_BYTES = HEADER_BYTES + 1;
+    private static final int LEGACY_HEADER_BYTES = 4 + 1 + 8 + 2;
+
+    private static final String INDEX_FILE_NAME = "thumbnails.idx";
+
+    private static final String SEGMENT_PREFIX = "thumbnails-";
+    private static final String SEGMENT_SUFFIX = ".pack";
+
+    // Compact once at least half the segment (and at least 4MB) is dead space
+    private static final double COMPACTION_DEAD_RATIO = 0.5;
+    private static final long COMPACTION_MIN_DEAD_BYTES = 4L * 1024 * 1024;
+
+    private final Path directory;
+    private final Path indexPath;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private ThumbnailIndex index = new ThumbnailIndex();
+
+    private Path segmentPath;
+    private long generation;
+    private FileChannel channel;
+    private long fileSize;
+    private long liveBytes;
+    // Also set under the read lock when a hit updates an access time
+    private volatile boolean indexDirty;
+
+    // Read-only view of the segment, remapped when reads go past its end
+    private MappedByteBuffer mapped;
+
+    public ThumbnailPackStore(Path directory) throws IOException {
+        this.directory = directory;
+        this.indexPath = directory.resolve(INDEX_FILE_NAME);
+        openLatestSegment();
+        importLegacyFiles();
+        saveIndexIfDirty();
+    }
+
+    /**
+     * Read the stored bytes for a key, or null if not present
+     */
+    public byte[] get(String key) {
+        lock.readLock().lock();
+        try {
+            ThumbnailIndex.Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.touch(System.currentTimeMillis())) {
+                indexDirty = true;
+            }
+            return read(entry.dataOffset(), entry.dataLength);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Record an access served from a higher tier so LRU eviction sees it
+     */
+    public void touch(String key) {
+        lock.readLock().lock();
+        try {
+            ThumbnailIndex.Entry entry = index.get(key);
+            if (entry != null && entry.touch(System.currentTimeMillis())) {
+                indexDirty = true;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String key) {
+        lock.readLock().lock();
+        try {
+            return index.contains(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a thumbnail, superseding any previous record for the key
+     */
+    public void put(String key, byte[] data, int width, int height) throws IOException {
+        lock.writeLock().lock();
+        try {
+            append(key, KIND_DATA, data, System.currentTimeMillis(), width, height);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append several thumbnails under one lock acquisition and a single gathering write
+     */
+    public void putAll(List<PendingRecord> records) throws IOException {
+        putAll(records, key -> true);
+    }
+
+    /**
+     * Append the records whose key still passes the filter; it is evaluated under the write lock, so a
+     * removal that follows a failed check can't be overtaken by the append. Returns how many were written
+     */
+    public int putAll(List<PendingRecord> records, Predicate<String> filter) throws IOException {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        lock.writeLock().lock();
+        try {
+            records = new ArrayList<>(records);
+            records.removeIf(record -> !filter.test(record.key));
+            if (records.isEmpty()) {
+                return 0;
+            }
+            long created = System.currentTimeMillis();
+            ByteBuffer[] buffers = new ByteBuffer[records.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                PendingRecord record = records.get(i);
+                buffers[i] = encodeRecord(record.key, KIND_DATA, record.data, created, record.width, record.height);
+            }
+
+            long position = fileSize;
+            channel.position(position);
+            long end = fileSize;
+            for (ByteBuffer buffer : buffers) {
+                end += buffer.remaining();
+            }
+            while (channel.position() < end) {
+                channel.write(buffers);
+            }
+
+            for (int i = 0; i < buffers.length; i++) {
+                PendingRecord record = records.get(i);
+                int recordLength = buffers[i].limit();
+                applyRecord(record.key, KIND_DATA, new ThumbnailIndex.Entry(position, recordLength,
+                        record.data.length, created, clampDimension(record.width), clampDimension(record.height)));
+                position += recordLength;
+            }
+            fileSize = position;
+            indexDirty = true;
+            return records.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a key by appending a tombstone
+     */
+    public boolean remove(String key) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!index.contains(key)) {
+                return false;
+            }
+            appendTombstone(key);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every record not read since the cutoff
+     */
+    public int removeOlderThan(long cutoffMillis) throws IOException {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, ThumbnailIndex.Entry> entry : snapshotEntries()) {
+            if (entry.getValue().lastAccessMillis < cutoffMillis) {
+                expired.add(entry.getKey());
+            }
+        }
+        return removeAll(expired);
+    }
+
+    /**
+     * Remove several keys under one lock acquisition; returns how many were present
+     */
+    public int removeAll(List<String> keys) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (String key : keys) {
+                if (index.contains(key)) {
+                    appendTombstone(key);
+                    removed++;
+                }
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copy of every key and its index entry, for maintenance passes
+     */
+    public List<Map.Entry<String, ThumbnailIndex.Entry>> snapshotEntries() {
+        lock.readLock().lock();
+        try {
+            return index.snapshot();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held by live records (what the disk budget is measured against)
+     */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getFileSize() {
+        lock.readLock().lock();
+        try {
+            return fileSize;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compact once at least half the segment (and at least COMPACTION_MIN_DEAD_BYTES) is dead space;
+     * true if it did
+     */
+    public boolean compactIfNeeded() throws IOException {
+        lock.readLock().lock();
+        try {
+            long deadBytes = fileSize - liveBytes;
+            if (deadBytes < COMPACTION_MIN_DEAD_BYTES || deadBytes < fileSize * COMPACTION_DEAD_RATIO) {
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * Force a compaction regardless of the dead-space ratio (no-op if one is already running)
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rewriteLiveRecords();
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Persist the key table if records were appended since the last snapshot
+     */
+    public void flushIndex() {
+        lock.writeLock().lock();
+        try {
+            saveIndexIfDirty();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+                saveIndexIfDirty();
+                channel.close();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            channel = null;
+            mapped = null;
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void openLatestSegment() throws IOException {
+        List<Path> segments = listSegments();
+        segmentPath = segments.isEmpty() ? segmentFor(0) : segments.get(segments.size() - 1);
+        generation = generationOf(segmentPath);
+
+        // Older generations are left behind when a compaction could not delete them (e.g. still mapped)
+        for (Path stale : segments) {
+            if (!stale.equals(segmentPath)) {
+                Files.deleteIfExists(stale);
+            }
+        }
+
+        channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        fileSize = channel.size();
+
+        // Start from the saved table when it describes this segment, then replay only the tail
+        ThumbnailIndex saved = ThumbnailIndex.load(indexPath);
+        if (saved != null && saved.getGeneration() == generation && saved.getCoveredSize() <= fileSize) {
+            index = saved;
+            liveBytes = 0;
+            for (Map.Entry<String, ThumbnailIndex.Entry> entry : index.snapshot()) {
+                liveBytes += entry.getValue().recordLength;
+            }
+            scanSegment(saved.getCoveredSize());
+        } else {
+            index = new ThumbnailIndex();
+            liveBytes = 0;
+            scanSegment(0);
+        }
+    }
+
+    /**
+     * Apply records from the given offset to the end of the segment in one sequential pass
+     * A torn record at the tail (crash mid-append) is truncated away
+     */
+    private void scanSegment(long from) throws IOException {
+        long position = from;
+        ByteBuffer header = ByteBuffer.allocate(STATUS_HEADER_BYTES);
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (position + LEGACY_HEADER_BYTES <= fileSize) {
+            header.clear();
+            header.limit((int) Math.min(STATUS_HEADER_BYTES, fileSize - position));
+            channel.read(header, position);
+            header.flip();
+            int magic = header.getInt();
+            int headerBytes;
+            byte kind;
+            long created;
+            int width = 0;
+            int height = 0;
+            if ((magic == RECORD_MAGIC && header.remaining() >= HEADER_BYTES - 4)
+                    || (magic == STATUS_RECORD_MAGIC && header.remaining() >= STATUS_HEADER_BYTES - 4)) {
+                headerBytes = magic == RECORD_MAGIC ? HEADER_BYTES : STATUS_HEADER_BYTES;
+                kind = header.get();
+                created = header.getLong();
+                width = header.getShort() & 0xFFFF;
+                height = header.getShort() & 0xFFFF;
+                if (magic == STATUS_RECORD_MAGIC) {
+                    header.get(); // Failures live in ThumbnailFailures, so this was never anything but ready
+                }
+            } else if (magic == LEGACY_RECORD_MAGIC) {
+                headerBytes = LEGACY_HEADER_BYTES;
+                kind = header.get();
+                created = header.getLong();
+            } else {
+                break;
+            }
+            int keyLength = header.getShort() & 0xFFFF;
+
+            long keyOffset = position + headerBytes;
+            if (keyOffset + keyLength + 4 > fileSize) {
+                break;
+            }
+            ByteBuffer keyBuffer = ByteBuffer.allocate(keyLength);
+            channel.read(keyBuffer, keyOffset);
+            String key = new String(keyBuffer.array(), StandardCharsets.UTF_8);
+
+            lengthBuffer.clear();
+            channel.read(lengthBuffer, keyOffset + keyLength);
+            lengthBuffer.flip();
+            int dataLength = lengthBuffer.getInt();
+            long dataOffset = keyOffset + keyLength + 4;
+            if (dataLength < 0 || dataOffset + dataLength > fileSize) {
+                break;
+            }
+
+            int recordLength = (int) (dataOffset + dataLength - position);
+            applyRecord(key, kind, new ThumbnailIndex.Entry(position, recordLength, dataLength, created, width,
+                    height));
+            position = dataOffset + dataLength;
+        }
+
+        if (position < fileSize) {
+            System.out.println("Thumbnail pack truncated at " + position + " (was " + fileSize + " bytes)");
+            channel.truncate(position);
+            fileSize = position;
+        }
+        if (position > from) {
+            indexDirty = true;
+        }
+        mapped = null;
+    }
+
+    private void applyRecord(String key, byte kind, ThumbnailIndex.Entry entry) {
+        ThumbnailIndex.Entry previous = index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.recordLength;
+        }
+        if (kind == KIND_DATA) {
+            index.put(key, entry);
+            liveBytes += entry.recordLength;
+        }
+    }
+
+    private void appendTombstone(String key) throws IOException {
+        append(key, KIND_TOMBSTONE, null, System.currentTimeMillis(), 0, 0);
+    }
+
+    private void append(String key, byte kind, byte[] data, long created, int width, int height)
+            throws IOException {
+        ByteBuffer record = encodeRecord(key, kind, data, created, width, height);
+        int recordLength = record.limit();
+        int dataLength = data != null ? data.length : 0;
+
+        long position = fileSize;
+        while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+        }
+        fileSize += recordLength;
+        applyRecord(key, kind, new ThumbnailIndex.Entry(position, recordLength, dataLength, created,
+                clampDimension(width), clampDimension(height)));
+        indexDirty = true;
+    }
+
+    private static ByteBuffer encodeRecord(String key, byte kind, byte[] data, long created, int width,
+            int height) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int dataLength = data != null ? data.length : 0;
+        int recordLength = HEADER_BYTES + keyBytes.length + 4 + dataLength;
+
+        ByteBuffer record = ByteBuffer.allocate(recordLength);
+        record.putInt(RECORD_MAGIC);
+        record.put(kind);
+        record.putLong(created);
+        record.putShort((short) clampDimension(width));
+        record.putShort((short) clampDimension(height));
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        record.putInt(dataLength);
+        if (data != null) {
+            record.put(data);
+        }
+        record.flip();
+        return record;
+    }
+
+    private static int clampDimension(int value) {
+        return Math.max(0, Math.min(value, 0xFFFF));
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        byte[] data = new byte[length];
+        long end = offset + length;
+        if (end > Integer.MAX_VALUE) {
+            // Beyond what a single mapping can address - fall back to positional reads
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of thumbnail pack");
+                }
+            }
+            return data;
+        }
+        mappingCovering(end).get((int) offset, data);
+        return data;
+    }
+
+    /**
+     * Current mapping, remapped to the full segment size if it does not reach the requested end
+     */
+    private synchronized MappedByteBuffer mappingCovering(long end) throws IOException {
+        if (mapped == null || mapped.capacity() < end) {
+            long size = Math.min(fileSize, Integer.MAX_VALUE);
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return mapped;
+    }
+
+    private void saveIndexIfDirty() {
+        if (!indexDirty || channel == null) {
+            return;
+        }
+        try {
+            index.save(indexPath, generation, fileSize);
+            indexDirty = false;
+        } catch (IOException e) {
+            // Not fatal - the next open replays the pack instead
+            System.out.println("Failed to save thumbnail index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Copy live records into the next generation segment and switch over to it
+     * Writing a new file instead of rewriting in place keeps readers of the old mapping valid. Records
+     * below the snapshot's end never change, so they are copied without the lock; under the write lock
+     * only records appended meanwhile are copied and removals recorded before the switch
+     */
+    private void rewriteLiveRecords() throws IOException {
+        FileChannel source;
+        long copyEnd;
+        long nextGeneration;
+        List<Map.Entry<String, ThumbnailIndex.Entry>> live = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            source = channel;
+            copyEnd = fileSize;
+            nextGeneration = generation + 1;
+            for (Map.Entry<String, ThumbnailIndex.Entry> entry : index.snapshot()) {
+                live.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        long before = copyEnd;
+        Path nextPath = segmentFor(nextGeneration);
+        boolean switched = false;
+        try (FileChannel target = FileChannel.open(nextPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            live.sort(Comparator.comparingLong(entry -> entry.getValue().recordOffset));
+            Map<String, Long> copiedOffsets = new HashMap<>();
+            long position = 0;
+            for (Map.Entry<String, ThumbnailIndex.Entry> entry : live) {
+                copiedOffsets.put(entry.getKey(), position);
+                position += copyRecord(source, entry.getValue(), target, position);
+            }
+            target.force(true);
+
+            lock.writeLock().lock();
+            try {
+                if (channel != source) {
+                    return; // Closed meanwhile
+                }
+                long copiedEnd = position;
+                ThumbnailIndex relocated = new ThumbnailIndex();
+                long relocatedLive = 0;
+                for (Map.Entry<String, ThumbnailIndex.Entry> entry : index.snapshot()) {
+                    ThumbnailIndex.Entry location = entry.getValue();
+                    Long offset = location.recordOffset < copyEnd ? copiedOffsets.get(entry.getKey()) : null;
+                    if (offset == null) {
+                        // Appended during the copy
+                        offset = position;
+                        position += copyRecord(channel, location, target, position);
+                    }
+                    // Relocate the current entry, which carries access times recorded during the copy
+                    relocated.put(entry.getKey(), location.relocate(offset));
+                    relocatedLive += location.recordLength;
+                }
+                // Removed during the copy - the new segment must not bring them back when it's rescanned
+                for (String key : copiedOffsets.keySet()) {
+                    if (!index.contains(key)) {
+                        ByteBuffer tombstone = encodeRecord(key, KIND_TOMBSTONE, null, System.currentTimeMillis(),
+                                0, 0);
+                        int length = tombstone.limit();
+                        while (tombstone.hasRemaining()) {
+                            target.write(tombstone, position + tombstone.position());
+                        }
+                        position += length;
+                    }
+                }
+                if (position > copiedEnd) {
+                    target.force(true);
+                }
+                switchSegment(nextPath, nextGeneration, relocated, position, relocatedLive);
+                switched = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            if (!switched) {
+                Files.deleteIfExists(nextPath);
+            }
+        }
+        System.out.println("Compacted thumbnail pack: " + before / 1024 + "KB -> " + getFileSize() / 1024 + "KB");
+    }
+
+    /**
+     * Append one whole record from a segment to the target at the given position; returns its length
+     */
+    private static long copyRecord(FileChannel source, ThumbnailIndex.Entry location, FileChannel target,
+            long position) throws IOException {
+        target.position(position);
+        long copied = 0;
+        while (copied < location.recordLength) {
+            copied += source.transferTo(location.recordOffset + copied, location.recordLength - copied, target);
+        }
+        return location.recordLength;
+    }
+
+    /**
+     * Make a fully written segment current (write lock held)
+     */
+    private void switchSegment(Path nextPath, long nextGeneration, ThumbnailIndex relocated, long size,
+            long live) throws IOException {
+        Path oldPath = segmentPath;
+        channel.close();
+        mapped = null;
+
+        channel = FileChannel.open(nextPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segmentPath = nextPath;
+        generation = nextGeneration;
+        fileSize = size;
+        liveBytes = live;
+        index = relocated;
+        indexDirty = true;
+        saveIndexIfDirty();
+
+        try {
+            Files.deleteIfExists(oldPath);
+        } catch (IOException e) {
+            // Still mapped on some platforms - removed on next open
+        }
+    }
+
+    /**
+     * One-time migration of the old one-JPEG-per-key layout into the pack
+     */
+    private void importLegacyFiles() {
+        int imported = 0;
+        try (DirectoryStream<Path> legacy = Files.newDirectoryStream(directory, "*.jpg")) {
+            lock.writeLock().lock();
+            try {
+                for (Path file : legacy) {
+                    String name = file.getFileName().toString();
+                    String key = name.substring(0, name.length() - ".jpg".length());
+                    try {
+                        if (!index.contains(key)) {
+                            append(key, KIND_DATA, Files.readAllBytes(file),
+                                    Files.getLastModifiedTime(file).toMillis(), 0, 0);
+                            imported++;
+                        }
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Unreadable legacy file - it will simply be regenerated
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IOException e) {
+            // No legacy files to import
+        }
+        if (imported > 0) {
+            System.out.println("Imported " + imported + " legacy thumbnails into pack");
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                if (generationOf(path) >= 0) {
+                    segments.add(path);
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(ThumbnailPackStore::generationOf));
+        return segments;
+    }
+
+    private Path segmentFor(long generation) {
+        return directory.resolve(SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+    }
+
+    private static long generationOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Thumbnail waiting to be appended by putAll
+     */
+    public static final class PendingRecord {
+        final String key;
+        final byte[] data;
+        final int width;
+        final int height;
+
+        public PendingRecord(String key, byte[] data, int width, int height) {
+            this.key = key;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
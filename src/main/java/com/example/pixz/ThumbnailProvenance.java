@@ -0,0 +1,39 @@
+package com.example.pixz;
+
+import javafx.scene.image.Image;
+
+/**
+ * Where a thumbnail came from, recorded when it is produced instead of guessed from its pixels
+ * Only REAL thumbnails are ever cached, so anything loaded from the cache is REAL by construction
+ */
+public enum ThumbnailProvenance {
+    REAL, // Decoded from the file (or from a stored thumbnail of it)
+    PLACEHOLDER, // Stand-in without a failure behind it (e.g. generation was interrupted)
+    TIMEOUT, // Stand-in because no frame arrived within the generation timeout
+    ERROR; // Stand-in because the file could not be decoded or played
+
+    public boolean isPlaceholder() {
+        return this != REAL;
+    }
+
+    /**
+     * Provenance of an image - O(1), reads no pixels
+     * A missing or empty image counts as a placeholder
+     */
+    public static ThumbnailProvenance of(Image image) {
+        if (image instanceof PlaceholderImage placeholder) {
+            return placeholder.getProvenance();
+        }
+        if (image == null || image.getWidth() == 0 || image.getHeight() == 0) {
+            return PLACEHOLDER;
+        }
+        return REAL;
+    }
+
+    /**
+     * Stand-in provenance for a failure cause
+     */
+    public static ThumbnailProvenance forFailure(ThumbnailFailures.Cause cause) {
+        return cause == ThumbnailFailures.Cause.TIMEOUT ? TIMEOUT : ERROR;
+    }
+}
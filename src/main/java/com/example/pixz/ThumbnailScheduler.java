@@ -0,0 +1,187 @@
+package com.example.pixz;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Work queue for thumbnail generation, ordered by where the file's card is relative to the viewport
+ * Visible cards run first, then the prefetch band around the viewport, then everything else in
+ * submission order. A request's tier is looked up by file path when it is queued and re-applied every
+ * time the viewport moves, so a 30k-item scan never keeps the cards on screen waiting
+ * Requests whose future completes while queued (e.g. cancelled) are dropped without running
+ */
+public class ThumbnailScheduler {
+    public enum Priority {
+        VISIBLE, PREFETCH, BACKGROUND
+    }
+
+    private final Object lock = new Object();
+    private final List<LinkedHashSet<Task>> queues = new ArrayList<>(); // Indexed by priority, FIFO within
+    private final Map<String, List<Task>> queuedByPath = new HashMap<>();
+    private Set<String> visiblePaths = new HashSet<>();
+    private Set<String> prefetchPaths = new HashSet<>();
+    private volatile boolean running = true;
+
+    public ThumbnailScheduler(String name, int threads) {
+        for (int i = 0; i < Priority.values().length; i++) {
+            queues.add(new LinkedHashSet<>());
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(this::runWorker, name + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /**
+     * Queue work for a file; it is skipped if the future is already done by the time a worker gets to it
+     */
+    public void submit(String path, CompletableFuture<?> future, Runnable work) {
+        Task task = new Task(path, future, work);
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            task.priority = priorityOf(path);
+            queues.get(task.priority.ordinal()).add(task);
+            queuedByPath.computeIfAbsent(path, key -> new ArrayList<>(1)).add(task);
+            lock.notify();
+        }
+        // Cancelled while queued - free the slot right away instead of when a worker reaches it
+        future.whenComplete((result, throwable) -> remove(task));
+    }
+
+    /**
+     * Re-rank queued work for the new viewport: files no longer near it fall back to BACKGROUND
+     * Cost is proportional to the paths passed in now and last time, not to the queue length
+     */
+    public void updateViewport(Collection<String> visible, Collection<String> prefetch) {
+        synchronized (lock) {
+            Set<String> affected = new HashSet<>(visiblePaths);
+            affected.addAll(prefetchPaths);
+            visiblePaths = new HashSet<>(visible);
+            prefetchPaths = new HashSet<>(prefetch);
+            affected.addAll(visiblePaths);
+            affected.addAll(prefetchPaths);
+
+            for (String path : affected) {
+                List<Task> tasks = queuedByPath.get(path);
+                if (tasks == null) {
+                    continue;
+                }
+                Priority priority = priorityOf(path);
+                for (Task task : tasks) {
+                    if (task.priority != priority) {
+                        queues.get(task.priority.ordinal()).remove(task);
+                        task.priority = priority;
+                        queues.get(priority.ordinal()).add(task);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Queued requests per priority, for diagnostics
+     */
+    public int[] getQueuedCounts() {
+        synchronized (lock) {
+            int[] counts = new int[queues.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = queues.get(i).size();
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Stop taking work; requests still queued are dropped (workers are daemons, running ones finish)
+     */
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+            for (LinkedHashSet<Task> queue : queues) {
+                queue.clear();
+            }
+            queuedByPath.clear();
+            lock.notifyAll();
+        }
+    }
+
+    private Priority priorityOf(String path) {
+        if (visiblePaths.contains(path)) {
+            return Priority.VISIBLE;
+        }
+        return prefetchPaths.contains(path) ? Priority.PREFETCH : Priority.BACKGROUND;
+    }
+
+    private void remove(Task task) {
+        synchronized (lock) {
+            if (queues.get(task.priority.ordinal()).remove(task)) {
+                unindex(task);
+            }
+        }
+    }
+
+    private void unindex(Task task) {
+        List<Task> tasks = queuedByPath.get(task.path);
+        if (tasks != null && tasks.remove(task) && tasks.isEmpty()) {
+            queuedByPath.remove(task.path);
+        }
+    }
+
+    private Task take() throws InterruptedException {
+        synchronized (lock) {
+            while (running) {
+                for (LinkedHashSet<Task> queue : queues) {
+                    if (!queue.isEmpty()) {
+                        Task task = queue.iterator().next();
+                        queue.remove(task);
+                        unindex(task);
+                        return task;
+                    }
+                }
+                lock.wait();
+            }
+            return null;
+        }
+    }
+
+    private void runWorker() {
+        try {
+            Task task;
+            while ((task = take()) != null) {
+                if (task.future.isDone()) {
+                    continue;
+                }
+                try {
+                    task.work.run();
+                } catch (Exception e) {
+                    System.out.println("Thumbnail task failed for " + task.path + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task {
+        final String path;
+        final CompletableFuture<?> future;
+        final Runnable work;
+        Priority priority; // Guarded by lock
+
+        Task(String path, CompletableFuture<?> future, Runnable work) {
+            this.path = path;
+            this.future = future;
+            this.work = work;
+        }
+    }
+}
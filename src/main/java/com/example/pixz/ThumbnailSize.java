@@ -0,0 +1,61 @@
+package com.example.pixz;
+
+/**
+ * Resolution levels of the thumbnail pyramid
+ * MEDIUM is generated for every item; SMALL and LARGE only when a cell actually needs them
+ */
+public enum ThumbnailSize {
+    SMALL(128),
+    MEDIUM(300),
+    LARGE(600);
+
+    // Separates the level from the base key; MEDIUM has no suffix so caches from before the pyramid stay valid
+    private static final char LEVEL_SEPARATOR = '@';
+
+    private final int pixels;
+
+    ThumbnailSize(int pixels) {
+        this.pixels = pixels;
+    }
+
+    /**
+     * Longest edge of a thumbnail at this level
+     */
+    public int getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Smallest level that covers a cell of this many physical pixels (largest level if none does)
+     */
+    public static ThumbnailSize forDisplaySize(double physicalPixels) {
+        for (ThumbnailSize size : values()) {
+            if (size.pixels >= physicalPixels) {
+                return size;
+            }
+        }
+        return LARGE;
+    }
+
+    /**
+     * Storage key of this level for a base (path or content) key
+     */
+    public String keyFor(String baseKey) {
+        return this == MEDIUM ? baseKey : baseKey + LEVEL_SEPARATOR + pixels;
+    }
+
+    /**
+     * Storage key of a video's scrub strip for a base key (shares the level separator, so baseKey works)
+     */
+    public static String stripKeyFor(String baseKey) {
+        return baseKey + LEVEL_SEPARATOR + "strip";
+    }
+
+    /**
+     * Base key of a level storage key
+     */
+    public static String baseKey(String storageKey) {
+        int separator = storageKey.indexOf(LEVEL_SEPARATOR);
+        return separator < 0 ? storageKey : storageKey.substring(0, separator);
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.pixz;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.imageio.ImageIO;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+/**
+ * Dedicated persistence stage for thumbnails
+ * Pixel copy, encode (JPEG, QOI or raw - see ThumbnailCodec) and pack writes all happen on one background thread, so whichever
+ * thread completes a thumbnail (including the FX thread for videos) only pays for a queue insert
+ *
+ * Pending writes are keyed by cache key - a newer thumbnail for the same key replaces the queued one
+ * Cancelling a key that's already in the batch being written marks it, and the batch drops it under the
+ * pack lock, so a write never lands after the removal that cancelled it
+ * Producers call awaitCapacity() before starting new work so decoding slows down when disk falls behind
+ */
+public class ThumbnailWriter {
+    // Hard bound on queued thumbnails (~360KB of pixels each while queued)
+    private static final int QUEUE_CAPACITY = 256;
+
+    // Producers start waiting once the queue is this full
+    private static final int HIGH_WATER_MARK = 192;
+
+    // Thumbnails encoded and appended per pack write
+    private static final int MAX_BATCH = 32;
+
+    // Index snapshots are comparatively large, so save at most this often while running
+    private static final long INDEX_FLUSH_INTERVAL_MS = 30_000;
+
+    private final ThumbnailPackStore packStore;
+    private final ThumbnailCodec.Format format;
+    private final LinkedHashMap<String, Image> pending = new LinkedHashMap<>();
+    // Keys of the batch being written, and those of them cancelled since it was taken
+    private final Set<String> inFlight = new HashSet<>();
+    private final Set<String> cancelledInFlight = new HashSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition belowHighWater = lock.newCondition();
+    private final Thread worker;
+
+    private volatile boolean running = true;
+    private long lastIndexFlush = System.currentTimeMillis();
+
+    // Counters exposed for diagnostics
+    private long written;
+    private long coalesced;
+    private long dropped;
+    private long cancelled;
+    private long batches;
+
+    public ThumbnailWriter(ThumbnailPackStore packStore, ThumbnailCodec.Format format) {
+        this.packStore = packStore;
+        this.format = format;
+        this.worker = new Thread(this::runLoop, "thumbnail-writer");
+        this.worker.setDaemon(true);
+        this.worker.setPriority(Thread.NORM_PRIORITY - 1);
+        this.worker.start();
+    }
+
+    /**
+     * Queue a thumbnail for persistence - never blocks
+     * Returns false if the queue was full and the thumbnail will only live in memory this session
+     */
+    public boolean submit(String cacheKey, Image thumbnail) {
+        lock.lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (pending.containsKey(cacheKey)) {
+                coalesced++;
+            } else if (pending.size() >= QUEUE_CAPACITY) {
+                dropped++;
+                return false;
+            }
+            pending.put(cacheKey, thumbnail);
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop a queued or in-flight write (e.g. the cached thumbnail is being invalidated)
+     * Once this returns the key won't be appended, so the caller can remove it from the pack
+     */
+    public void cancel(String cacheKey) {
+        lock.lock();
+        try {
+            if (pending.remove(cacheKey) != null) {
+                cancelled++;
+                signalIfBelowHighWater();
+            }
+            if (inFlight.contains(cacheKey)) {
+                cancelledInFlight.add(cacheKey);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Backpressure for producers - blocks while the write queue is above its high-water mark
+     */
+    public void awaitCapacity() throws InterruptedException {
+        lock.lock();
+        try {
+            while (running && pending.size() >= HIGH_WATER_MARK) {
+                belowHighWater.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One-line summary of the counters for logging
+     */
+    public String getStats() {
+        lock.lock();
+        try {
+            return String.format("format=%s written=%d batches=%d coalesced=%d dropped=%d cancelled=%d queued=%d",
+                    format, written, batches, coalesced, dropped, cancelled, pending.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting work, write whatever is still queued (bounded wait) and save the index
+     */
+    public void shutdown(long timeoutMillis) {
+        lock.lock();
+        try {
+            running = false;
+            notEmpty.signalAll();
+            belowHighWater.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runLoop() {
+        while (true) {
+            List<Map.Entry<String, Image>> batch = takeBatch();
+            if (batch == null) {
+                break;
+            }
+            writeBatch(batch);
+            finishBatch();
+        }
+        packStore.flushIndex();
+    }
+
+    /**
+     * Wait for work and remove up to MAX_BATCH entries; null once shut down and drained
+     */
+    private List<Map.Entry<String, Image>> takeBatch() {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                if (!running) {
+                    return null;
+                }
+                // Idle - a good moment to persist the index
+                if (System.currentTimeMillis() - lastIndexFlush >= INDEX_FLUSH_INTERVAL_MS) {
+                    lock.unlock();
+                    try {
+                        flushIndex();
+                    } finally {
+                        lock.lock();
+                    }
+                    continue;
+                }
+                notEmpty.await(INDEX_FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+
+            List<Map.Entry<String, Image>> batch = new ArrayList<>(Math.min(MAX_BATCH, pending.size()));
+            Iterator<Map.Entry<String, Image>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext() && batch.size() < MAX_BATCH) {
+                Map.Entry<String, Image> entry = iterator.next();
+                batch.add(Map.entry(entry.getKey(), entry.getValue()));
+                inFlight.add(entry.getKey());
+                iterator.remove();
+            }
+            signalIfBelowHighWater();
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<String, Image>> batch) {
+        List<ThumbnailPackStore.PendingRecord> records = new ArrayList<>(batch.size());
+        for (Map.Entry<String, Image> entry : batch) {
+            if (isCancelled(entry.getKey())) {
+                continue; // Don't bother encoding - the pack write would drop it anyway
+            }
+            Image thumbnail = entry.getValue();
+            byte[] encoded = encode(thumbnail);
+            if (encoded != null) {
+                records.add(new ThumbnailPackStore.PendingRecord(entry.getKey(), encoded,
+                        (int) thumbnail.getWidth(), (int) thumbnail.getHeight()));
+            }
+        }
+
+        try {
+            // Checked again under the pack lock - a cancel may arrive while the batch is encoding
+            int appended = packStore.putAll(records, key -> !isCancelled(key));
+            lock.lock();
+            try {
+                written += appended;
+                batches++;
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            // Failed to cache, not critical
+            System.out.println("Thumbnail batch write failed: " + e.getMessage());
+        }
+    }
+
+    private boolean isCancelled(String cacheKey) {
+        lock.lock();
+        try {
+            return cancelledInFlight.contains(cacheKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The batch is in the pack (or failed) - later cancels only concern pending writes again
+     */
+    private void finishBatch() {
+        lock.lock();
+        try {
+            cancelled += cancelledInFlight.size();
+            inFlight.clear();
+            cancelledInFlight.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushIndex() {
+        packStore.flushIndex();
+        lastIndexFlush = System.currentTimeMillis();
+    }
+
+    private byte[] encode(Image thumbnail) {
+        if (format == ThumbnailCodec.Format.JPEG) {
+            return encodeJpeg(thumbnail);
+        }
+        try {
+            return ThumbnailCodec.encode(thumbnail, format);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Copy pixels in one bulk transfer straight into the raster of an RGB image and encode as JPEG
+     */
+    private static byte[] encodeJpeg(Image thumbnail) {
+        try {
+            int width = (int) thumbnail.getWidth();
+            int height = (int) thumbnail.getHeight();
+            PixelReader pixelReader = thumbnail.getPixelReader();
+            if (width <= 0 || height <= 0 || pixelReader == null) {
+                return null;
+            }
+
+            // TYPE_INT_RGB ignores the alpha byte, so ARGB pixels can be written as-is
+            BufferedImage bImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            int[] raster = ((DataBufferInt) bImage.getRaster().getDataBuffer()).getData();
+            pixelReader.getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), IntBuffer.wrap(raster),
+                    width);
+
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(32 * 1024);
+            ImageIO.write(bImage, "jpg", encoded);
+
+            // Flush BufferedImage to release native resources
+            bImage.flush();
+            return encoded.toByteArray();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void signalIfBelowHighWater() {
+        if (pending.size() < HIGH_WATER_MARK) {
+            belowHighWater.signalAll();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.pixz;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javafx.application.Platform;
+import javafx.beans.value.ChangeListener;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.image.WritableImage;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.MediaView;
+import javafx.util.Duration;
+
+/**
+ * Extracts one representative frame per video with a fixed number of player slots
+ * Each slot keeps its MediaView and plays one video at a time (muted), seeked to a fraction of the
+ * duration so fade-ins and black leaders don't become the thumbnail. Requests beyond the slot count wait
+ * in a queue without holding any thread; timeouts fire from a scheduler
+ * Scrub strips (evenly spaced frames side by side in one image) are background work: they only start
+ * when no thumbnail frame is waiting, and use at most one slot
+ * All slot state lives on the FX thread, and every exit path (frame, error, timeout, cancellation) goes
+ * through one finish step, so a slot is returned exactly once
+ */
+public class VideoThumbnailEngine {
+    // Position of the frame used, as a fraction of the duration
+    private static final double FRAME_POSITION = 0.1;
+
+    // Time allowed per captured frame, from opening the video
+    private static final long TIMEOUT_MS = 3000;
+
+    // Strips running at once - leaves the other slots to thumbnails that arrive meanwhile
+    private static final int MAX_STRIPS_RUNNING = 1;
+
+    private final ScheduledExecutorService timeoutExecutor;
+    private final List<Slot> idleSlots = new ArrayList<>(); // FX thread only
+    private final ArrayDeque<Job> queue = new ArrayDeque<>(); // FX thread only
+    private final ArrayDeque<Job> stripQueue = new ArrayDeque<>(); // FX thread only
+    private int stripsRunning; // FX thread only
+    private final int slotCount;
+
+    private final LongAdder extracted = new LongAdder();
+    private final LongAdder strips = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * Failed extraction - the reason decides how the failure is recorded
+     */
+    public static final class FrameException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        private final ThumbnailFailures.Cause reason;
+
+        FrameException(ThumbnailFailures.Cause reason, String message) {
+            super(message);
+            this.reason = reason;
+        }
+
+        public ThumbnailFailures.Cause getReason() {
+            return reason;
+        }
+    }
+
+    public VideoThumbnailEngine(int slots) {
+        this.slotCount = Math.max(1, slots);
+        for (int i = 0; i < slotCount; i++) {
+            idleSlots.add(new Slot());
+        }
+        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "video-thumbnail-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue frame extraction for a video; the result fits a square of the given pixels
+     * Fails with FrameException; cancelling the returned future frees its slot (or its queue place)
+     */
+    public CompletableFuture<WritableImage> extractFrame(File file, int pixels) {
+        return enqueue(new Job(file, pixels, new double[] { FRAME_POSITION }), queue);
+    }
+
+    /**
+     * Queue a scrub strip: frames at the middle of each of count equal parts of the video, each fitting a
+     * square of framePixels, laid out left to right in one image (all frames have the same size)
+     * Low priority; fails with FrameException, e.g. for videos whose duration is unknown
+     */
+    public CompletableFuture<WritableImage> extractStrip(File file, int count, int framePixels) {
+        double[] positions = new double[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = (i + 0.5) / count;
+        }
+        return enqueue(new Job(file, framePixels, positions), stripQueue);
+    }
+
+    public String getStats() {
+        return "slots=" + slotCount + ", extracted=" + extracted.sum() + ", strips=" + strips.sum()
+                + ", failed=" + failed.sum() + ", timedOut=" + timedOut.sum();
+    }
+
+    private CompletableFuture<WritableImage> enqueue(Job job, ArrayDeque<Job> target) {
+        job.result.whenComplete((frame, throwable) -> Platform.runLater(() -> finish(job)));
+        Platform.runLater(() -> {
+            target.add(job);
+            startQueued();
+        });
+        return job.result;
+    }
+
+    public void shutdown() {
+        timeoutExecutor.shutdownNow();
+    }
+
+    /**
+     * Hand queued jobs to idle slots, thumbnails before strips; jobs completed while queued (cancelled)
+     * are dropped
+     */
+    private void startQueued() {
+        while (!idleSlots.isEmpty()) {
+            Job job = queue.poll();
+            if (job == null && stripsRunning < MAX_STRIPS_RUNNING) {
+                job = stripQueue.poll();
+            }
+            if (job == null) {
+                return;
+            }
+            if (job.result.isDone()) {
+                continue;
+            }
+            if (job.isStrip()) {
+                stripsRunning++;
+            }
+            job.slot = idleSlots.remove(idleSlots.size() - 1);
+            start(job);
+        }
+    }
+
+    private void start(Job job) {
+        try {
+            MediaPlayer player = new MediaPlayer(new Media(job.file.toURI().toString()));
+            job.player = player;
+            player.setMute(true);
+            job.slot.view.setFitWidth(job.pixels);
+            job.slot.view.setFitHeight(job.pixels);
+            job.slot.view.setMediaPlayer(player);
+
+            player.setOnError(() -> fail(job, ThumbnailFailures.Cause.MEDIA_ERROR,
+                    String.valueOf(player.getError())));
+            player.setOnReady(() -> seekToFrame(job));
+            player.setOnEndOfMedia(() -> snapshot(job)); // Shorter than the seek target allows
+
+            long timeoutMs = TIMEOUT_MS * job.positions.length;
+            job.timeout = timeoutExecutor.schedule(
+                    () -> fail(job, ThumbnailFailures.Cause.TIMEOUT, "no frames within " + timeoutMs + "ms"),
+                    timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            fail(job, ThumbnailFailures.Cause.MEDIA_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Seek and play until the next position is reached - a paused player doesn't render the seeked frame
+     */
+    private void seekToFrame(Job job) {
+        if (job.result.isDone()) {
+            return;
+        }
+        MediaPlayer player = job.player;
+        Duration duration = player.getMedia().getDuration();
+        boolean durationKnown = duration != null && !duration.isUnknown() && !duration.isIndefinite();
+        if (!durationKnown && job.isStrip()) {
+            fail(job, ThumbnailFailures.Cause.MEDIA_ERROR, "unknown duration");
+            return;
+        }
+        Duration target = durationKnown ? duration.multiply(job.positions[job.frames.size()]) : Duration.ZERO;
+
+        job.positionReached = new ChangeListener<>() {
+            @Override
+            public void changed(javafx.beans.value.ObservableValue<? extends Duration> observable,
+                    Duration oldTime, Duration newTime) {
+                if (newTime.greaterThanOrEqualTo(target)) {
+                    observable.removeListener(this);
+                    // One more pulse so the view has rendered the frame
+                    Platform.runLater(() -> snapshot(job));
+                }
+            }
+        };
+        player.currentTimeProperty().addListener(job.positionReached);
+        if (target.greaterThan(Duration.ZERO)) {
+            player.seek(target);
+        }
+        player.play();
+    }
+
+    private void snapshot(Job job) {
+        if (job.result.isDone()) {
+            return;
+        }
+        // Reached by end of media - the position listener must not capture again
+        job.player.currentTimeProperty().removeListener(job.positionReached);
+        try {
+            job.player.pause();
+            SnapshotParameters params = new SnapshotParameters();
+            params.setFill(javafx.scene.paint.Color.BLACK);
+            WritableImage frame = job.slot.view.snapshot(params, null);
+            if (frame == null || frame.getWidth() <= 0 || frame.getHeight() <= 0) {
+                fail(job, ThumbnailFailures.Cause.DECODE_ERROR, "empty frame");
+                return;
+            }
+            job.frames.add(frame);
+            if (job.frames.size() < job.positions.length) {
+                seekToFrame(job);
+            } else if (!job.isStrip()) {
+                if (job.result.complete(frame)) {
+                    extracted.increment();
+                }
+            } else if (job.result.complete(composeStrip(job.frames))) {
+                strips.increment();
+            }
+        } catch (Exception e) {
+            fail(job, ThumbnailFailures.Cause.DECODE_ERROR, e.getMessage());
+        }
+    }
+
+    /**
+     * Frames side by side; every frame gets the first frame's cell size
+     */
+    private static WritableImage composeStrip(List<WritableImage> frames) {
+        int frameWidth = (int) frames.get(0).getWidth();
+        int frameHeight = (int) frames.get(0).getHeight();
+        WritableImage strip = new WritableImage(frameWidth * frames.size(), frameHeight);
+        for (int i = 0; i < frames.size(); i++) {
+            WritableImage frame = frames.get(i);
+            int width = Math.min(frameWidth, (int) frame.getWidth());
+            int height = Math.min(frameHeight, (int) frame.getHeight());
+            strip.getPixelWriter().setPixels(i * frameWidth, 0, width, height, frame.getPixelReader(), 0, 0);
+        }
+        return strip;
+    }
+
+    private void fail(Job job, ThumbnailFailures.Cause reason, String message) {
+        if (job.result.completeExceptionally(new FrameException(reason, message))) {
+            (reason == ThumbnailFailures.Cause.TIMEOUT ? timedOut : failed).increment();
+        }
+    }
+
+    /**
+     * Runs on the FX thread once the result is complete, however it completed; returns the slot
+     */
+    private void finish(Job job) {
+        if (job.finished) {
+            return;
+        }
+        job.finished = true;
+        if (job.timeout != null) {
+            job.timeout.cancel(false);
+        }
+        if (job.player != null) {
+            if (job.positionReached != null) {
+                job.player.currentTimeProperty().removeListener(job.positionReached);
+            }
+            job.player.setOnReady(null);
+            job.player.setOnError(null);
+            job.player.setOnEndOfMedia(null);
+            job.player.stop();
+            job.player.dispose();
+        }
+        if (job.slot != null) {
+            job.slot.view.setMediaPlayer(null);
+            idleSlots.add(job.slot);
+            job.slot = null;
+            if (job.isStrip()) {
+                stripsRunning--;
+            }
+        }
+        startQueued();
+    }
+
+    private static final class Slot {
+        final MediaView view = new MediaView();
+
+        Slot() {
+            view.setPreserveRatio(true); // Don't squeeze, will be cropped in display
+        }
+    }
+
+    private static final class Job {
+        final File file;
+        final int pixels;
+        final double[] positions; // Fractions of the duration to capture, ascending
+        final CompletableFuture<WritableImage> result = new CompletableFuture<>();
+
+        // FX thread only
+        final List<WritableImage> frames = new ArrayList<>();
+        Slot slot;
+        MediaPlayer player;
+        ChangeListener<Duration> positionReached;
+        ScheduledFuture<?> timeout;
+        boolean finished;
+
+        Job(File file, int pixels, double[] positions) {
+            this.file = file;
+            this.pixels = pixels;
+            this.positions = positions;
+        }
+
+        boolean isStrip() {
+            return positions.length > 1;
+        }
+    }
+}
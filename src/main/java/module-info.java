@@ -3,6 +3,7 @@ module com.example.pixz {
     requires javafx.fxml;
     requires javafx.media;
     requires java.desktop;
+    requires java.management;
 
     opens com.example.pixz to javafx.fxml;
 